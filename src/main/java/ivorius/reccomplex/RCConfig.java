@@ -61,6 +61,7 @@ public class RCConfig
     public static boolean avoidOverlappingGeneration;
     public static boolean honorStructureGenerationOption;
     public static boolean avoidPlacerChunkGeneration;
+    public static boolean sweepPlacerConformity;
 
     public static boolean generateNature;
     public static boolean decorationHacks;
@@ -82,6 +83,8 @@ public class RCConfig
     public static boolean memorizeDecoration;
     public static boolean memorizeSaplings;
 
+    public static boolean shardStructureGenerationData;
+
     public static int[] blockSelectorModifierKeys;
 
     private static boolean lightweightMode;
@@ -106,8 +109,15 @@ public class RCConfig
 
     public static float mazePlacementReversesPerRoom;
     public static long mazeTimeout;
+    public static int mazeSolverThreads;
     public static int rayAverageMaxHeightSpread;
 
+    public static int decodedStructureCacheBlocks;
+    public static int instanceDataCacheSize;
+    public static int structurePrefetchThreads;
+    public static int retrogenTickBudget;
+    public static boolean writeUnwatchedChunksDirectly;
+
     public static final Map<String, Boolean> globalToggles = new HashMap<>();
 
     public static void loadConfig(String configID)
@@ -133,6 +143,8 @@ public class RCConfig
 
             memorizeDecoration = config.getBoolean("memorizeDecoration", CATEGORY_GENERAL, false, "Memorize decoration spawns like trees or mushrooms (for /#whatisthis). Since decoration is so common, it is recommended to use this only for debugging / balancing purposes.");
             memorizeSaplings = config.getBoolean("memorizeSaplings", CATEGORY_GENERAL, false, "Memorize sapling spawns (for /#whatisthis). Since saplings are so common, it is recommended to use this only for debugging / balancing purposes.");
+
+            shardStructureGenerationData = config.getBoolean("shardStructureGenerationData", CATEGORY_GENERAL, false, "Store generated structure data in one file per 32x32 chunk region instead of one file per dimension. Regions are loaded when first needed and only changed regions are saved, which helps with large, long-running worlds. Existing data is migrated on world load.");
         }
 
         if (configID == null || configID.equals(CATEGORY_BALANCING))
@@ -140,6 +152,7 @@ public class RCConfig
             avoidOverlappingGeneration = config.getBoolean("avoidOverlappingGeneration", CATEGORY_BALANCING, true, "Enabling this will cancel any structure generation if another structure is present at the cooridnate already.");
             honorStructureGenerationOption = config.getBoolean("honorStructureGenerationOption", CATEGORY_BALANCING, true, "If disabled, Recurrent Complex will generate structures in worlds without the structure generation option.");
             avoidPlacerChunkGeneration = config.getBoolean("avoidPlacerChunkGeneration", CATEGORY_BALANCING, false, "If enabled, placers (including decoration placement scoring/rays) will avoid triggering new chunks to be generated. This can decrease placement quality, but helps prevent chained chunk generation issues.");
+            sweepPlacerConformity = config.getBoolean("sweepPlacerConformity", CATEGORY_BALANCING, true, "Match placer factors at all heights at once, probing each block only once. Disable to match each height on its own, as before. Both find the same placements.");
 
             generateNature = config.getBoolean("generateNature", CATEGORY_BALANCING, true, "Whether the nature (e.g. trees, mushrooms) added by the mod should be actively generating.");
             decorationHacks = config.getBoolean("decorationHacks", CATEGORY_BALANCING, true, "Enable hacks for a few decoration types. Disabling this may fix problems but will deactivate ReC overriding those types of structures.");
@@ -184,7 +197,13 @@ public class RCConfig
             );
 
             mazePlacementReversesPerRoom = config.getFloat("mazePlacementReversesPerRoom", CATEGORY_BALANCING, 3, -1, 100, "Maximum number of reverses per room the maze generator can do. A higher number results in a better generation success rate, but may freeze the server temporarily.");
-            mazeTimeout = config.getInt("mazeTimeout", CATEGORY_BALANCING, 20000, -1, 600000, "Maze generation timeout, in milliseconds. After the time is over, the maze generation will just give up.");
+            mazeTimeout = config.getInt("mazeTimeout", CATEGORY_BALANCING, 20000, -1, 600000, "Maze generation timeout, in milliseconds, including the time spent waiting for a solver thread. After the time is over, the maze generation will just give up. Set to -1 to never give up.");
+            mazeSolverThreads = config.getInt("mazeSolverThreads", CATEGORY_BALANCING, 2, 1, 16, "Number of threads that solve mazes. Mazes generating at the same time beyond this wait for a free thread.");
+            decodedStructureCacheBlocks = config.getInt("decodedStructureCacheBlocks", CATEGORY_BALANCING, 16000000, 0, Integer.MAX_VALUE, "Maximum total number of blocks of decoded structure data kept in memory between generation calls. Higher values speed up partially spawned structures at the cost of memory. Set to 0 to disable the cache.");
+            instanceDataCacheSize = config.getInt("instanceDataCacheSize", CATEGORY_BALANCING, 256, 0, 100000, "Maximum number of generated structures whose decoded instance data is kept in memory while they are being completed in neighboring chunks. Set to 0 to disable the cache.");
+            structurePrefetchThreads = config.getInt("structurePrefetchThreads", CATEGORY_BALANCING, 1, 0, 8, "Number of background threads that decode structures and their placement plans ahead of the chunks about to be generated. Does not affect what generates. Set to 0 to disable.");
+            retrogenTickBudget = config.getInt("retrogenTickBudget", CATEGORY_BALANCING, 20, 1, 1000, "Milliseconds per server tick that retro-generation may spend decorating chunks. Higher values finish sooner but lag the server.");
+            writeUnwatchedChunksDirectly = config.getBoolean("writeUnwatchedChunksDirectly", CATEGORY_BALANCING, true, "Place structure blocks directly into chunks no player is watching, and relight each such chunk once per structure. Disable if blocks of other mods misbehave when generated.");
             rayAverageMaxHeightSpread = config.getInt("rayAverageMaxHeightSpread", CATEGORY_BALANCING, 7, 0, 64, "Maximum allowed height spread for average ray placement. Set to 0 to disable height spread tolerance.");
 
             universalTransformer = null;
@@ -32,8 +32,10 @@ import ivorius.reccomplex.utils.FMLUtils;
 import ivorius.reccomplex.utils.presets.PresetRegistry;
 import ivorius.reccomplex.world.gen.feature.GenerationSanityChecker;
 import ivorius.reccomplex.world.gen.feature.RCWorldgenMonitor;
+import ivorius.reccomplex.world.gen.feature.StructureInstanceDataCache;
 import ivorius.reccomplex.world.gen.feature.selector.NaturalStructureSelector;
 import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
+import ivorius.reccomplex.world.gen.feature.structure.generic.DecodedWorldDataCache;
 import ivorius.reccomplex.world.gen.feature.structure.generic.StructureSaveHandler;
 import ivorius.reccomplex.world.gen.feature.structure.generic.generation.*;
 import ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules.MazeRuleRegistry;
@@ -309,8 +311,12 @@ public class RCRegistryHandler
         genInfoRegistry.registerType("decoration", VanillaDecorationGeneration.class, new VanillaDecorationGeneration.Serializer());
 
         StructureRegistry.INSTANCE.registerModule(new NaturalGeneration.Cache());
+        StructureRegistry.INSTANCE.registerModule(new StaticGeneration.Cache());
+        StructureRegistry.INSTANCE.registerModule(new MazeGeneration.Cache());
         StructureRegistry.INSTANCE.registerModule(new VanillaDecorationGeneration.Cache());
         StructureRegistry.INSTANCE.registerModule(new VanillaGeneration.Cache());
+        StructureRegistry.INSTANCE.registerModule(new DecodedWorldDataCache.Module());
+        StructureRegistry.INSTANCE.registerModule(new StructureInstanceDataCache.Module());
 
         SerializableStringTypeRegistry<GenericPlacer.Factor> placerFactorRegistry = FactorRegistry.INSTANCE.getTypeRegistry();
         placerFactorRegistry.registerType("limit", FactorLimit.class, new FactorLimit.Serializer());
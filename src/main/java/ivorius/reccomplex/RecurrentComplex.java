@@ -21,6 +21,7 @@ import ivorius.mcopts.translation.ServerTranslations;
 import ivorius.reccomplex.world.gen.feature.structure.registry.MCRegistrySpecial;
 import ivorius.reccomplex.world.gen.feature.structure.schematics.SchematicLoader;
 import ivorius.reccomplex.utils.*;
+import ivorius.reccomplex.utils.expression.BlockStateTruthTable;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraftforge.common.config.Configuration;
 import net.minecraftforge.event.RegistryEvent;
@@ -170,6 +171,13 @@ public class RecurrentComplex
         SchematicLoader.initializeFolder();
     }
 
+    @EventHandler
+    public void onIdMapping(FMLModIdMappingEvent event)
+    {
+        // Block state ids may have changed
+        BlockStateTruthTable.invalidateAll();
+    }
+
     @EventHandler
     public void onServerStart(FMLServerStartingEvent event)
     {
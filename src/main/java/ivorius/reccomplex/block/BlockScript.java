@@ -11,6 +11,7 @@ import ivorius.reccomplex.nbt.NBTStorable;
 import ivorius.reccomplex.network.PacketEditTileEntity;
 import ivorius.reccomplex.utils.UnstableBlock;
 import ivorius.reccomplex.world.gen.feature.StructureGenerator;
+import ivorius.reccomplex.world.gen.feature.structure.context.StructureSpawnContext;
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.RunTransformer;
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.TransformerMulti;
 import ivorius.reccomplex.world.gen.script.WorldScriptMulti;
@@ -76,7 +77,12 @@ public class BlockScript extends Block implements UnstableBlock
 
             WorldScriptMulti.InstanceData instanceData = tileEntity.doPrepareInstanceData(generator.prepare().get());
             if (instanceData != null)
-                tileEntity.generate(generator.spawn().get(), new RunTransformer(new TransformerMulti(), new TransformerMulti.InstanceData()), instanceData);
+            {
+                try (StructureSpawnContext context = generator.spawn().get())
+                {
+                    tileEntity.generate(context, new RunTransformer(new TransformerMulti(), new TransformerMulti.InstanceData()), instanceData);
+                }
+            }
         }
     }
 
@@ -5,115 +5,112 @@
 
 package ivorius.reccomplex.commands.structure;
 
-import ivorius.ivtoolkit.util.IvStreams;
 import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
-import ivorius.mcopts.commands.CommandExpecting;
+import ivorius.mcopts.commands.CommandSplit;
+import ivorius.mcopts.commands.SimpleCommand;
 import ivorius.mcopts.commands.parameters.*;
 import ivorius.mcopts.commands.parameters.expect.Expect;
 import ivorius.mcopts.commands.parameters.expect.MCE;
 import ivorius.reccomplex.commands.parameters.expect.RCE;
 import ivorius.reccomplex.commands.parameters.RCP;
-import ivorius.reccomplex.files.RCFiles;
-import ivorius.reccomplex.files.loading.FileSuffixFilter;
-import ivorius.reccomplex.world.gen.feature.WorldGenStructures;
-import ivorius.reccomplex.world.gen.feature.structure.Structure;
+import ivorius.reccomplex.utils.algebra.ExpressionCache;
+import ivorius.reccomplex.utils.expression.ResourceExpression;
+import ivorius.reccomplex.world.gen.feature.RetrogenJob;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.util.math.ChunkPos;
-import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
-import net.minecraft.world.chunk.storage.RegionFileCache;
-import org.apache.commons.lang3.tuple.Pair;
 
 import javax.annotation.Nonnull;
-import java.io.File;
-import java.util.Arrays;
-import java.util.Random;
-import java.util.function.Predicate;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 /**
  * Created by lukas on 25.05.14.
  */
-public class CommandRetrogen extends CommandExpecting
+public class CommandRetrogen extends CommandSplit
 {
-    public static Stream<Pair<Integer, Integer>> existingRegions(File worldDir)
+    public CommandRetrogen()
     {
-        File regionsDirectory = RCFiles.getValidatedFolder(new File(worldDir, "region"), false);
-        if (regionsDirectory == null) return Stream.empty();
+        super(RCConfig.commandPrefix + "retro");
 
-        String[] mcas = regionsDirectory.list(new FileSuffixFilter("mca"));
-        if (mcas == null) throw new IllegalStateException();
-
-        return Arrays.stream(mcas).map(s -> s.split("\\."))
-                .filter(p -> p.length == 4 && p[0].equals("r")) // Is region file
-                .map(p -> Pair.of(Integer.parseInt(p[1]), Integer.parseInt(p[2])))
-                .filter(rfc -> rfc.getLeft() != null && rfc.getRight() != null); // Has coords
-    }
-
-    public static Stream<ChunkPos> existingChunks(World world)
-    {
-        // Each region is 32x32 chunks
-        File worldDirectory = world.getSaveHandler().getWorldDirectory();
-        return existingRegions(worldDirectory)
-                .map(rfc -> new ChunkPos(rfc.getLeft() << 5, rfc.getRight() << 5))
-                .map(rflc -> Pair.of(RegionFileCache.createOrLoadRegionFile(worldDirectory, rflc.x, rflc.z), rflc))
-                .flatMap(r -> IvStreams.flatMapToObj(IntStream.range(0, 32), x -> IntStream.range(0, 32).mapToObj(z -> Pair.of(r.getLeft(), add(r.getRight(), x, z)))))
-                .filter(p -> p.getLeft().chunkExists(p.getRight().x & 31, p.getRight().z & 31)) // Region has chunk
-                .map(Pair::getRight);
-    }
-
-    @Nonnull
-    protected static ChunkPos add(ChunkPos pos, int x, int z)
-    {
-        return new ChunkPos(x + pos.x, z + pos.z);
-    }
-
-    public static Random getRandom(WorldServer world, ChunkPos pos)
-    {
-        return world.setRandomSeed(pos.x, pos.z, 0xDEADBEEF);
-    }
-
-    public static long retrogen(WorldServer world, Predicate<Structure> structurePredicate)
-    {
-        return existingChunks(world)
-                .filter(pos -> world.getChunkFromChunkCoords(pos.x, pos.z).isTerrainPopulated())
-                .filter(pos -> WorldGenStructures.decorate(world, getRandom(world, pos), pos, structurePredicate))
-                .count();
-    }
-
-    @Override
-    public String getName()
-    {
-        return RCConfig.commandPrefix + "retro";
-    }
-
-    public int getRequiredPermissionLevel()
-    {
-        return 2;
-    }
-
-    @Override
-    public void expect(Expect expect)
-    {
-        expect
+        add(new SimpleCommand("start", expect -> expect
                 .named("exp").words(RCE::structurePredicate).descriptionU("resource expression: only generate these structures")
-                .named("dimension", "d").then(MCE::dimension);
+                .named("dimension", "d").then(MCE::dimension))
+        {
+            @Override
+            public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+            {
+                Parameters parameters = Parameters.of(args, expect()::declare);
+
+                String expression = parameters.get("exp").to(RCP::expression, new ResourceExpression(s -> !s.isEmpty()))
+                        .optional().map(ExpressionCache::getExpression).orElse(null);
+                WorldServer world = parameters.get("dimension").to(MCP.dimension(server, sender)).require();
+
+                RetrogenJob job = RetrogenJob.start(world, expression);
+
+                sender.sendMessage(RecurrentComplex.translations.format("commands.rcretro.start", job.getRegionCount(), world.provider.getDimension()));
+            }
+        });
+
+        add(new SimpleCommand("status", expect -> expect.named("dimension", "d").then(MCE::dimension))
+        {
+            @Override
+            public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+            {
+                RetrogenJob job = job(server, sender, args, expect());
+
+                long remaining = job.getSecondsRemaining();
+                sender.sendMessage(RecurrentComplex.translations.format(job.isDone() ? "commands.rcretro.status.done" : job.isPaused() ? "commands.rcretro.status.paused" : "commands.rcretro.status",
+                        job.getVisitedChunks(), job.getEstimatedChunks(), job.getGeneratedChunks(),
+                        job.getRegionIndex(), job.getRegionCount(),
+                        String.format("%.1f", job.getChunksPerSecond()),
+                        remaining >= 0 ? String.format("%d:%02d:%02d", remaining / 3600, remaining / 60 % 60, remaining % 60) : "?"));
+            }
+        });
+
+        add(new SimpleCommand("pause", expect -> expect.named("dimension", "d").then(MCE::dimension))
+        {
+            @Override
+            public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+            {
+                job(server, sender, args, expect()).setPaused(true);
+                sender.sendMessage(RecurrentComplex.translations.format("commands.rcretro.pause"));
+            }
+        });
+
+        add(new SimpleCommand("resume", expect -> expect.named("dimension", "d").then(MCE::dimension))
+        {
+            @Override
+            public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+            {
+                job(server, sender, args, expect()).setPaused(false);
+                sender.sendMessage(RecurrentComplex.translations.format("commands.rcretro.resume"));
+            }
+        });
+
+        add(new SimpleCommand("cancel", expect -> expect.named("dimension", "d").then(MCE::dimension))
+        {
+            @Override
+            public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+            {
+                RetrogenJob job = job(server, sender, args, expect());
+                job.cancel();
+                sender.sendMessage(RecurrentComplex.translations.format("commands.rcretro.cancel", job.getVisitedChunks()));
+            }
+        });
+
+        permitFor(2);
     }
 
-    @Override
-    public void execute(MinecraftServer server, ICommandSender commandSender, String[] args) throws CommandException
+    @Nonnull
+    protected static RetrogenJob job(MinecraftServer server, ICommandSender sender, String[] args, Expect expect) throws CommandException
     {
-        Parameters parameters = Parameters.of(args, expect()::declare);
-
-        Predicate<Structure> structurePredicate = parameters.get("exp").to(RCP::structurePredicate).optional().orElse(null);
-        WorldServer world = parameters.get("dimension").to(MCP.dimension(server, commandSender)).require();
-
-        long count = retrogen(world, structurePredicate);
+        Parameters parameters = Parameters.of(args, expect::declare);
+        WorldServer world = parameters.get("dimension").to(MCP.dimension(server, sender)).require();
 
-        commandSender.sendMessage(RecurrentComplex.translations.format("commands.rcretro.count", String.valueOf(count)));
+        RetrogenJob job = RetrogenJob.get(world);
+        if (job == null)
+            throw RecurrentComplex.translations.commandException("commands.rcretro.none");
+        return job;
     }
 }
@@ -4,6 +4,7 @@ import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.minecraft.world.WorldProvider;
 
@@ -102,6 +103,8 @@ public class DimensionDictionary
 
     private static final Set<String> SET_UNCATEGORIZED = Collections.singleton(UNCATEGORIZED);
 
+    private static final AtomicInteger generation = new AtomicInteger();
+
     static
     {
         registerType(UNCATEGORIZED);
@@ -131,6 +134,7 @@ public class DimensionDictionary
         dTypes.addAll(types);
 
         types.forEach(DimensionDictionary::registerType);
+        generation.incrementAndGet();
     }
 
     /**
@@ -150,6 +154,8 @@ public class DimensionDictionary
             else
                 dTypes.removeAll(types);
         }
+
+        generation.incrementAndGet();
     }
 
     /**
@@ -160,7 +166,10 @@ public class DimensionDictionary
     public static void registerType(String type)
     {
         if (!types.containsKey(type))
+        {
             types.put(type, new Type());
+            generation.incrementAndGet();
+        }
     }
 
     /**
@@ -186,6 +195,8 @@ public class DimensionDictionary
 
         for (String sub : subtypes)
             registerGetType(sub).supertypes.add(type);
+
+        generation.incrementAndGet();
     }
 
     /**
@@ -201,6 +212,19 @@ public class DimensionDictionary
 
         for (String supertype : supertypes)
             registerGetType(supertype).subtypes.add(type);
+
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Returns a counter that changes whenever a registration changes.
+     * Dimensions implementing {@link Handler} can change their types without notice, and are not covered.
+     *
+     * @return The current generation of the dictionary.
+     */
+    public static int generation()
+    {
+        return generation.get();
     }
 
     /**
@@ -17,6 +17,7 @@ import ivorius.reccomplex.commands.RCCommands;
 import ivorius.reccomplex.events.ItemGenerationEvent;
 import ivorius.reccomplex.gui.GuiHider;
 import ivorius.reccomplex.item.ItemInputHandler;
+import ivorius.reccomplex.world.gen.feature.RetrogenJob;
 import ivorius.reccomplex.world.gen.feature.WorldGenStructures;
 import ivorius.reccomplex.world.gen.feature.WorldRandomData;
 import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
@@ -54,6 +55,7 @@ import net.minecraftforge.event.CommandEvent;
 import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.terraingen.PopulateChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.client.event.ConfigChangedEvent;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
@@ -184,6 +186,23 @@ public class RCForgeEventHandler
         {
             RecurrentComplex.communicationHandler.handleMessages(event.type == TickEvent.Type.SERVER, true);
         }
+
+        if (event.type == TickEvent.Type.SERVER && event.phase == TickEvent.Phase.END)
+            RetrogenJob.tickAll();
+    }
+
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event)
+    {
+        if (event.getWorld() instanceof WorldServer)
+            RetrogenJob.load((WorldServer) event.getWorld());
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event)
+    {
+        if (event.getWorld() instanceof WorldServer)
+            RetrogenJob.unload(event.getWorld());
     }
 
     @SubscribeEvent
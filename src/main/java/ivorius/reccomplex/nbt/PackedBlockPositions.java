@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.nbt;
+
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact int array encoding of a set of block positions, for instance data.
+ * Positions are stored as single indices into their bounding box, after a header of
+ * {@code [version, minX, minY, minZ, width, height]}. Indices keep the order positions were given in.
+ */
+public class PackedBlockPositions
+{
+    public static final int VERSION = 1;
+    public static final int HEADER_LENGTH = 6;
+
+    /**
+     * @return The packed positions, or null if their bounding box is too large to be indexed.
+     */
+    @Nullable
+    public static int[] pack(@Nonnull Collection<BlockPos> positions)
+    {
+        if (positions.isEmpty())
+            return new int[0];
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (BlockPos pos : positions)
+        {
+            minX = Math.min(minX, pos.getX());
+            minY = Math.min(minY, pos.getY());
+            minZ = Math.min(minZ, pos.getZ());
+            maxX = Math.max(maxX, pos.getX());
+            maxY = Math.max(maxY, pos.getY());
+            maxZ = Math.max(maxZ, pos.getZ());
+        }
+
+        long width = (long) maxX - minX + 1, height = (long) maxY - minY + 1, length = (long) maxZ - minZ + 1;
+        if (width * height * length > Integer.MAX_VALUE)
+            return null;
+
+        int[] packed = new int[HEADER_LENGTH + positions.size()];
+        packed[0] = VERSION;
+        packed[1] = minX;
+        packed[2] = minY;
+        packed[3] = minZ;
+        packed[4] = (int) width;
+        packed[5] = (int) height;
+
+        int i = HEADER_LENGTH;
+        for (BlockPos pos : positions)
+            packed[i++] = ((pos.getZ() - minZ) * (int) height + (pos.getY() - minY)) * (int) width + (pos.getX() - minX);
+
+        return packed;
+    }
+
+    @Nonnull
+    public static List<BlockPos> unpack(@Nonnull int[] packed)
+    {
+        if (packed.length < HEADER_LENGTH || packed[0] != VERSION)
+            return new ArrayList<>();
+
+        int minX = packed[1], minY = packed[2], minZ = packed[3], width = packed[4], height = packed[5];
+
+        List<BlockPos> positions = new ArrayList<>(packed.length - HEADER_LENGTH);
+        for (int i = HEADER_LENGTH; i < packed.length; i++)
+        {
+            int zy = packed[i] / width;
+            positions.add(new BlockPos(minX + packed[i] % width, minY + zy % height, minZ + zy / height));
+        }
+        return positions;
+    }
+}
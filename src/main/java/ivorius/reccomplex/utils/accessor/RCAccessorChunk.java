@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.utils.accessor;
+
+import ivorius.reccomplex.RecurrentComplex;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.fml.relauncher.ReflectionHelper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Light updates of single chunk columns, which are private in {@link Chunk}.
+ * Uses method handles so repeated calls are about as cheap as direct ones.
+ */
+public class RCAccessorChunk
+{
+    private static final MethodHandle relightBlock;
+    private static final MethodHandle propagateSkylightOcclusion;
+
+    static
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try
+        {
+            relightBlock = lookup.unreflect(ReflectionHelper.findMethod(Chunk.class, "relightBlock", "func_76615_h",
+                    Integer.TYPE, Integer.TYPE, Integer.TYPE));
+            propagateSkylightOcclusion = lookup.unreflect(ReflectionHelper.findMethod(Chunk.class, "propagateSkylightOcclusion", "func_76595_e",
+                    Integer.TYPE, Integer.TYPE));
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Updates the height map and sky light of a column, from the given height (exclusive) downwards.
+     */
+    public static void relightBlock(Chunk chunk, int x, int y, int z)
+    {
+        try
+        {
+            relightBlock.invokeExact(chunk, x, y, z);
+        }
+        catch (Throwable e)
+        {
+            RecurrentComplex.logger.error(e);
+        }
+    }
+
+    /**
+     * Queues the column for sky light gap updates with its neighbors.
+     */
+    public static void propagateSkylightOcclusion(Chunk chunk, int x, int z)
+    {
+        try
+        {
+            propagateSkylightOcclusion.invokeExact(chunk, x, z);
+        }
+        catch (Throwable e)
+        {
+            RecurrentComplex.logger.error(e);
+        }
+    }
+}
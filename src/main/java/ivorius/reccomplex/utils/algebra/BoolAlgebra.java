@@ -5,7 +5,9 @@
 
 package ivorius.reccomplex.utils.algebra;
 
+import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Created by lukas on 23.02.15.
@@ -16,80 +18,142 @@ public abstract class BoolAlgebra
 
     public static Algebras.Unary<Boolean> not(String symbol)
     {
-        return new Algebras.Unary<Boolean>(5f, Algebras.Unary.Notation.PREFIX, symbol)
-        {
-            @Override
-            public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> expression)
-            {
-                return !expression.evaluate(variableEvaluator);
-            }
-        };
+        return new Not(symbol);
     }
 
     public static Algebras.Infix<Boolean> and(String symbol)
     {
-        return new Algebras.Infix<Boolean>(4f, symbol)
-        {
-            @Override
-            public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
-            {
-                return left.evaluate(variableEvaluator) && right.evaluate(variableEvaluator);
-            }
-        };
+        return new And(symbol);
     }
 
     public static Algebras.Infix<Boolean> or(String symbol)
     {
-        return new Algebras.Infix<Boolean>(4f, symbol)
-        {
-            @Override
-            public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
-            {
-                return left.evaluate(variableEvaluator) || right.evaluate(variableEvaluator);
-            }
-        };
+        return new Or(symbol);
     }
 
     public static Algebras.Infix<Boolean> equals(String symbol)
     {
-        return new Algebras.Infix<Boolean>(3f, symbol)
-        {
-            @Override
-            public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
-            {
-                return left.evaluate(variableEvaluator) == right.evaluate(variableEvaluator);
-            }
-        };
+        return new Equals(symbol, true);
     }
 
     public static Algebras.Infix<Boolean> unEquals(String symbol)
     {
-        return new Algebras.Infix<Boolean>(3f, symbol)
-        {
-            @Override
-            public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
-            {
-                return left.evaluate(variableEvaluator) == right.evaluate(variableEvaluator);
-            }
-        };
+        return new Equals(symbol, false);
     }
 
     public static Algebra.Operator<Boolean> conditional(String left, String right)
     {
-        return new Algebra.Operator<Boolean>(2f, true, true, left, right)
-        {
-            @Override
-            public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V>[] expressions)
-            {
-                return expressions[0].evaluate(variableEvaluator)
-                        ? expressions[1].evaluate(variableEvaluator)
-                        : expressions[2].evaluate(variableEvaluator);
-            }
-        };
+        return new Conditional(left, right);
     }
 
     public static Algebras.Parentheses<Boolean> parentheses(String left, String right)
     {
         return new Algebras.Parentheses<>(1f, left, right);
     }
+
+    protected static class Not extends Algebras.Unary<Boolean> implements BoolExpressionCompiler.Compilable
+    {
+        public Not(String symbol)
+        {
+            super(5f, Notation.PREFIX, symbol);
+        }
+
+        @Override
+        public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> expression)
+        {
+            return !expression.evaluate(variableEvaluator);
+        }
+
+        @Override
+        public <A> Predicate<A> compile(List<Predicate<A>> arguments)
+        {
+            return BoolExpressionCompiler.not(arguments.get(0));
+        }
+    }
+
+    protected static class And extends Algebras.Infix<Boolean> implements BoolExpressionCompiler.Compilable
+    {
+        public And(String symbol)
+        {
+            super(4f, symbol);
+        }
+
+        @Override
+        public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
+        {
+            return left.evaluate(variableEvaluator) && right.evaluate(variableEvaluator);
+        }
+
+        @Override
+        public <A> Predicate<A> compile(List<Predicate<A>> arguments)
+        {
+            return BoolExpressionCompiler.and(arguments);
+        }
+    }
+
+    protected static class Or extends Algebras.Infix<Boolean> implements BoolExpressionCompiler.Compilable
+    {
+        public Or(String symbol)
+        {
+            super(4f, symbol);
+        }
+
+        @Override
+        public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
+        {
+            return left.evaluate(variableEvaluator) || right.evaluate(variableEvaluator);
+        }
+
+        @Override
+        public <A> Predicate<A> compile(List<Predicate<A>> arguments)
+        {
+            return BoolExpressionCompiler.or(arguments);
+        }
+    }
+
+    protected static class Equals extends Algebras.Infix<Boolean> implements BoolExpressionCompiler.Compilable
+    {
+        public final boolean equal;
+
+        public Equals(String symbol, boolean equal)
+        {
+            super(3f, symbol);
+            this.equal = equal;
+        }
+
+        @Override
+        public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V> left, Algebra.Expression<Boolean, V> right)
+        {
+            return (left.evaluate(variableEvaluator) == right.evaluate(variableEvaluator)) == equal;
+        }
+
+        @Override
+        public <A> Predicate<A> compile(List<Predicate<A>> arguments)
+        {
+            Predicate<A> equals = BoolExpressionCompiler.equal(arguments.get(0), arguments.get(1));
+            return equal ? equals : BoolExpressionCompiler.not(equals);
+        }
+    }
+
+    protected static class Conditional extends Algebra.Operator<Boolean> implements BoolExpressionCompiler.Compilable
+    {
+        public Conditional(String left, String right)
+        {
+            super(2f, true, true, left, right);
+        }
+
+        @Override
+        public <V> Boolean evaluate(Function<V, Boolean> variableEvaluator, Algebra.Expression<Boolean, V>[] expressions)
+        {
+            return expressions[0].evaluate(variableEvaluator)
+                    ? expressions[1].evaluate(variableEvaluator)
+                    : expressions[2].evaluate(variableEvaluator);
+        }
+
+        @Override
+        public <A> Predicate<A> compile(List<Predicate<A>> arguments)
+        {
+            return BoolExpressionCompiler.conditional(arguments.get(0), arguments.get(1), arguments.get(2));
+        }
+    }
 }
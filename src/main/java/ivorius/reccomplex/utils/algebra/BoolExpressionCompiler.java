@@ -0,0 +1,202 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.utils.algebra;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Turns parsed boolean expressions into predicates, so evaluation doesn't walk the operator tree or box every result.
+ * Constant sub-expressions are folded, and chains of the same junction are flattened into a single short-circuiting loop.
+ * Operators that don't implement {@link Compilable} are interpreted as before.
+ */
+public class BoolExpressionCompiler
+{
+    private static final Predicate<Object> ALWAYS = new ConstantPredicate(true);
+    private static final Predicate<Object> NEVER = new ConstantPredicate(false);
+
+    /**
+     * @param variables Compiles the value of a variable. May return {@link #constant(boolean)} for folding.
+     */
+    public static <A, V> Predicate<A> compile(Algebra.Expression<Boolean, V> expression, Function<V, Predicate<A>> variables)
+    {
+        if (expression instanceof Algebra.Constant)
+            return constant(Boolean.TRUE.equals(((Algebra.Constant<Boolean, V>) expression).value));
+        else if (expression instanceof Algebra.Variable)
+            return variables.apply(((Algebra.Variable<Boolean, V>) expression).value);
+        else if (expression instanceof Algebra.Operation)
+        {
+            Algebra.Operation<Boolean, V> operation = (Algebra.Operation<Boolean, V>) expression;
+
+            if (operation.operator instanceof Algebras.Parentheses)
+                return compile(operation.expressions[0], variables);
+            else if (operation.operator instanceof Compilable)
+            {
+                List<Predicate<A>> arguments = new ArrayList<>(operation.expressions.length);
+                for (Algebra.Expression<Boolean, V> argument : operation.expressions)
+                    arguments.add(compile(argument, variables));
+                return ((Compilable) operation.operator).compile(arguments);
+            }
+        }
+
+        // Unknown operator, interpret but with compiled variables
+        Map<V, Predicate<A>> compiled = new IdentityHashMap<>();
+        expression.walkVariables(variable ->
+        {
+            compiled.computeIfAbsent(variable.value, variables);
+            return true;
+        });
+        return a -> Boolean.TRUE.equals(expression.evaluate(v -> compiled.get(v).test(a)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A> Predicate<A> constant(boolean value)
+    {
+        return (Predicate<A>) (value ? ALWAYS : NEVER);
+    }
+
+    public static boolean isConstant(Predicate<?> predicate, boolean value)
+    {
+        return predicate == (value ? ALWAYS : NEVER);
+    }
+
+    public static <A> Predicate<A> not(Predicate<A> predicate)
+    {
+        if (predicate instanceof ConstantPredicate)
+            return constant(!((ConstantPredicate) predicate).value);
+        else if (predicate instanceof Not)
+            return ((Not<A>) predicate).predicate;
+
+        return new Not<>(predicate);
+    }
+
+    public static <A> Predicate<A> and(List<Predicate<A>> predicates)
+    {
+        return junction(predicates, false);
+    }
+
+    public static <A> Predicate<A> or(List<Predicate<A>> predicates)
+    {
+        return junction(predicates, true);
+    }
+
+    /**
+     * @param any true for or, false for and. Also the result that ends the evaluation early.
+     */
+    protected static <A> Predicate<A> junction(List<Predicate<A>> predicates, boolean any)
+    {
+        List<Predicate<A>> terms = new ArrayList<>();
+        for (Predicate<A> predicate : predicates)
+        {
+            if (isConstant(predicate, any))
+                return constant(any);
+            else if (isConstant(predicate, !any))
+                continue; // Doesn't change the result
+
+            if (predicate instanceof Junction && ((Junction<A>) predicate).any == any)
+                terms.addAll(((Junction<A>) predicate).terms);
+            else
+                terms.add(predicate);
+        }
+
+        return terms.isEmpty() ? constant(!any)
+                : terms.size() == 1 ? terms.get(0)
+                : new Junction<>(terms, any);
+    }
+
+    public static <A> Predicate<A> equal(Predicate<A> left, Predicate<A> right)
+    {
+        if (left instanceof ConstantPredicate)
+            return ((ConstantPredicate) left).value ? right : not(right);
+        else if (right instanceof ConstantPredicate)
+            return ((ConstantPredicate) right).value ? left : not(left);
+
+        return a -> left.test(a) == right.test(a);
+    }
+
+    public static <A> Predicate<A> conditional(Predicate<A> condition, Predicate<A> ifTrue, Predicate<A> ifFalse)
+    {
+        if (condition instanceof ConstantPredicate)
+            return ((ConstantPredicate) condition).value ? ifTrue : ifFalse;
+        else if (ifTrue instanceof ConstantPredicate && ifFalse instanceof ConstantPredicate)
+        {
+            boolean valueTrue = ((ConstantPredicate) ifTrue).value;
+            return valueTrue == ((ConstantPredicate) ifFalse).value ? ifTrue
+                    : valueTrue ? condition : not(condition);
+        }
+
+        return a -> condition.test(a) ? ifTrue.test(a) : ifFalse.test(a);
+    }
+
+    /**
+     * An operator that knows how to combine its compiled arguments.
+     */
+    public interface Compilable
+    {
+        <A> Predicate<A> compile(List<Predicate<A>> arguments);
+    }
+
+    protected static class ConstantPredicate implements Predicate<Object>
+    {
+        public final boolean value;
+
+        public ConstantPredicate(boolean value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Object o)
+        {
+            return value;
+        }
+    }
+
+    protected static class Not<A> implements Predicate<A>
+    {
+        public final Predicate<A> predicate;
+
+        public Not(Predicate<A> predicate)
+        {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(A a)
+        {
+            return !predicate.test(a);
+        }
+    }
+
+    protected static class Junction<A> implements Predicate<A>
+    {
+        public final List<Predicate<A>> terms;
+        public final boolean any;
+
+        private final Predicate<A>[] array;
+
+        @SuppressWarnings("unchecked")
+        public Junction(List<Predicate<A>> terms, boolean any)
+        {
+            this.terms = terms;
+            this.any = any;
+            this.array = terms.toArray(new Predicate[terms.size()]);
+        }
+
+        @Override
+        public boolean test(A a)
+        {
+            for (Predicate<A> term : array)
+                if (term.test(a) == any)
+                    return any;
+            return !any;
+        }
+    }
+}
@@ -7,6 +7,7 @@ package ivorius.reccomplex.utils.algebra;
 
 import ivorius.reccomplex.RCConfig;
 
+import javax.annotation.Nullable;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -17,6 +18,9 @@ public class BoolFunctionExpressionCache<A, U> extends FunctionExpressionCache<B
 {
     public static final String GLOBAL_PREFIX = "global:";
 
+    @Nullable
+    protected Predicate<SupplierCache<A>> compiledExpression;
+
     public BoolFunctionExpressionCache(Algebra<Boolean> algebra)
     {
         super(algebra);
@@ -38,6 +42,30 @@ public class BoolFunctionExpressionCache<A, U> extends FunctionExpressionCache<B
         addType(new VariableTypeGlobal(GLOBAL_PREFIX, ""));
     }
 
+    @Override
+    protected void parseExpression()
+    {
+        super.parseExpression();
+
+        @SuppressWarnings("unchecked") Algebra.Expression<Boolean, Function<SupplierCache<? super A>, Boolean>> expression = (Algebra.Expression<Boolean, Function<SupplierCache<? super A>, Boolean>>) this.parsedExpression;
+        compiledExpression = expression != null ? BoolExpressionCompiler.compile(expression, this::compileVariable) : null;
+    }
+
+    protected Predicate<SupplierCache<A>> compileVariable(Function<SupplierCache<? super A>, Boolean> function)
+    {
+        if (function instanceof FunctionExpressionCaches.ConstantFunction)
+            return BoolExpressionCompiler.constant(Boolean.TRUE.equals(((FunctionExpressionCaches.ConstantFunction) function).value));
+
+        return a -> Boolean.TRUE.equals(function.apply(a));
+    }
+
+    @Override
+    public Boolean evaluate(SupplierCache<A> a)
+    {
+        Predicate<SupplierCache<A>> compiled = compiledExpression;
+        return compiled != null ? compiled.test(a) : super.evaluate(a);
+    }
+
     @Override
     public boolean test(A a)
     {
@@ -22,7 +22,7 @@ public class FunctionExpressionCaches
             @Override
             public Function<SupplierCache<Object>, T> parse(String var)
             {
-                return o -> val;
+                return new ConstantFunction<>(val);
             }
 
             @Override
@@ -40,7 +40,7 @@ public class FunctionExpressionCaches
             @Override
             public Function<SupplierCache<Object>, T> parse(String var)
             {
-                return o -> val;
+                return new ConstantFunction<>(val);
             }
 
             @Override
@@ -51,6 +51,25 @@ public class FunctionExpressionCaches
         };
     }
 
+    /**
+     * A function that ignores its argument, recognizable so compiled expressions can fold it.
+     */
+    public static class ConstantFunction<A, T> implements Function<A, T>
+    {
+        public final T value;
+
+        public ConstantFunction(T value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public T apply(A a)
+        {
+            return value;
+        }
+    }
+
     public static String readableException(ExpressionCache<?> expressionCache)
     {
         ParseException parseException = expressionCache.getParseException();
@@ -26,6 +26,7 @@ import net.minecraftforge.fml.common.Loader;
 import net.minecraftforge.fml.common.event.FMLInterModComms;
 import org.apache.commons.lang3.tuple.Pair;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -42,6 +43,12 @@ public class BlockExpression extends BoolFunctionExpressionCache<IBlockState, Ob
 
     public final MCRegistry registry;
 
+    // Null if the expression reads more than the state, like global toggles
+    @Nullable
+    protected BlockStateTruthTable truthTable;
+    // Off when nested in another expression, which remembers the results itself
+    protected boolean memoize = true;
+
     public BlockExpression(MCRegistry registry)
     {
         super(RCBoolAlgebra.algebra(), true, TextFormatting.GREEN + "Any Block");
@@ -54,6 +61,41 @@ public class BlockExpression extends BoolFunctionExpressionCache<IBlockState, Ob
         addTypes(new PropertyVariableType(PROPERTY_PREFIX, ""), t -> t.alias("$[", ""));
     }
 
+    @Override
+    protected void parseExpression()
+    {
+        super.parseExpression();
+
+        truthTable = memoize && parsedExpression != null && parsedExpression.walkVariables(v -> !v.identifier.startsWith(GLOBAL_PREFIX))
+                ? new BlockStateTruthTable() : null;
+    }
+
+    @Override
+    public Boolean evaluate(SupplierCache<IBlockState> a)
+    {
+        BlockStateTruthTable table = truthTable;
+        if (table == null)
+            return super.evaluate(a);
+
+        int id = BlockStateTruthTable.id(a.get());
+        int known = table.get(id);
+        if (known != BlockStateTruthTable.UNKNOWN)
+            return known == 1;
+
+        Boolean result = super.evaluate(a);
+        if (result != null)
+            table.set(id, result);
+        return result;
+    }
+
+    @Override
+    public boolean test(IBlockState state)
+    {
+        BlockStateTruthTable table = truthTable;
+        int known = table != null ? table.get(BlockStateTruthTable.id(state)) : BlockStateTruthTable.UNKNOWN;
+        return known != BlockStateTruthTable.UNKNOWN ? known == 1 : super.test(state);
+    }
+
     public static String of(MCRegistry registry, Block block)
     {
         return registry.idFromBlock(block).toString();
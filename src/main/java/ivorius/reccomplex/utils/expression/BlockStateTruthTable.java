@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.utils.expression;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the results of a block state predicate, two bits per state id, filled in as states are seen.
+ * Only states that are the registered state of their id are remembered; any other state (e.g. one with
+ * properties that don't map to metadata) shares its id with another one and must be evaluated each time.
+ * State ids change when a world remaps block ids, so all tables forget their results on {@link #invalidateAll()}.
+ * Memory is only allocated once results are remembered, and grows with the highest state id seen.
+ */
+public class BlockStateTruthTable
+{
+    public static final int UNKNOWN = -1;
+
+    // Block ids are 12 bits, metadata 4
+    private static final int STATES = 1 << 16;
+
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    // Words of 64 states each to start with; most expressions only ever see a few blocks
+    private static final int MIN_WORDS = 16;
+
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    // Null until the first result is remembered
+    @Nullable
+    private volatile Bits bits;
+
+    public static int id(IBlockState state)
+    {
+        int id = Block.BLOCK_STATE_IDS.get(state);
+        return id >= 0 && id < STATES && Block.BLOCK_STATE_IDS.getByValue(id) == state ? id : UNKNOWN;
+    }
+
+    /**
+     * Makes all tables forget their results, e.g. because block ids were remapped.
+     */
+    public static void invalidateAll()
+    {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return Whether any memory was allocated for results yet.
+     */
+    public boolean isAllocated()
+    {
+        return bits != null;
+    }
+
+    /**
+     * @return 1 if the state is known to match, 0 if known not to match and {@link #UNKNOWN} otherwise.
+     */
+    public int get(int id)
+    {
+        if (id == UNKNOWN)
+            return UNKNOWN;
+
+        Bits bits = this.bits;
+        int word = id >> 6;
+        if (bits == null || bits.generation != generation.get() || word >= bits.known.length())
+            return UNKNOWN;
+
+        long bit = 1L << (id & 63);
+        return (bits.known.get(word) & bit) == 0 ? UNKNOWN
+                : (bits.values.get(word) & bit) != 0 ? 1 : 0;
+    }
+
+    public void set(int id, boolean value)
+    {
+        if (id == UNKNOWN)
+            return;
+
+        int word = id >> 6;
+        Bits bits = this.bits;
+        if (bits == null || bits.generation != generation.get() || word >= bits.known.length())
+            bits = grow(word);
+
+        long bit = 1L << (id & 63);
+        // Value first, so whoever sees the known bit sees the value too
+        if (value)
+            bits.values.getAndAccumulate(word, bit, (left, right) -> left | right);
+        bits.known.getAndAccumulate(word, bit, (left, right) -> left | right);
+    }
+
+    protected synchronized Bits grow(int word)
+    {
+        Bits bits = this.bits;
+        int generation = BlockStateTruthTable.generation.get();
+        if (bits != null && bits.generation == generation && word < bits.known.length())
+            return bits;
+
+        int words = Math.min(Math.max(Integer.highestOneBit(word) << 1, MIN_WORDS), STATES >> 6);
+        Bits grown = new Bits(generation, words);
+        if (bits != null && bits.generation == generation)
+        {
+            // Known first: a known bit copied means its value was set before, and is copied after
+            // Results set in the old bits while copying may get lost, which only means they are evaluated again
+            for (int i = 0; i < bits.known.length(); i++)
+                grown.known.set(i, bits.known.get(i));
+            for (int i = 0; i < bits.values.length(); i++)
+                grown.values.set(i, bits.values.get(i));
+        }
+
+        return this.bits = grown;
+    }
+
+    protected static class Bits
+    {
+        public final int generation;
+
+        public final AtomicLongArray known;
+        public final AtomicLongArray values;
+
+        public Bits(int generation, int words)
+        {
+            this.generation = generation;
+            this.known = new AtomicLongArray(words);
+            this.values = new AtomicLongArray(words);
+        }
+    }
+}
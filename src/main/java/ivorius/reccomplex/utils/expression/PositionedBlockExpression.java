@@ -22,6 +22,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
 
+import javax.annotation.Nullable;
 import java.text.ParseException;
 import java.util.function.Function;
 
@@ -37,6 +38,10 @@ public class PositionedBlockExpression extends BoolFunctionExpressionCache<Posit
 
     public final MCRegistry registry;
 
+    // Null if the expression depends on more than the block state
+    @Nullable
+    protected BlockStateTruthTable truthTable;
+
     public PositionedBlockExpression(MCRegistry registry)
     {
         super(RCBoolAlgebra.algebra(), true, TextFormatting.GREEN + "Any Block");
@@ -49,6 +54,55 @@ public class PositionedBlockExpression extends BoolFunctionExpressionCache<Posit
         addType(new BlocksVariableType(PositionedBlockExpression.BLOCKS_PREFIX, ""));
     }
 
+    @Override
+    protected void parseExpression()
+    {
+        super.parseExpression();
+
+        truthTable = parsedExpression != null && parsedExpression.walkVariables(v -> isStateOnly(v.identifier))
+                ? new BlockStateTruthTable() : null;
+    }
+
+    /**
+     * @return Whether the variable only depends on the block state, and not on its position or the world.
+     */
+    protected boolean isStateOnly(String variable)
+    {
+        VariableType<Boolean, ? super Argument, ? super Object> type = type(variable);
+        if (type == null || type instanceof SustainVariableType || type instanceof VariableTypeGlobal)
+            return false;
+
+        if (type instanceof IsVariableType)
+        {
+            String var = variable.substring(type.getPrefix().length());
+            return var.equals("liquid") || var.equals("water") || var.equals("lava");
+        }
+
+        // The nested block expression may read global toggles too
+        if (type instanceof BlockVariableType)
+            return !variable.contains(GLOBAL_PREFIX);
+
+        return true;
+    }
+
+    @Override
+    public Boolean evaluate(SupplierCache<Argument> a)
+    {
+        BlockStateTruthTable table = truthTable;
+        if (table == null)
+            return super.evaluate(a);
+
+        int id = BlockStateTruthTable.id(a.get().state);
+        int known = table.get(id);
+        if (known != BlockStateTruthTable.UNKNOWN)
+            return known == 1;
+
+        Boolean result = super.evaluate(a);
+        if (result != null)
+            table.set(id, result);
+        return result;
+    }
+
     public static class Argument
     {
         public MockWorld world;
@@ -97,7 +151,10 @@ public class PositionedBlockExpression extends BoolFunctionExpressionCache<Posit
         @Override
         public BlockExpression createCache()
         {
-            return new BlockExpression(registry);
+            BlockExpression expression = new BlockExpression(registry);
+            // Only the outermost expression remembers results
+            expression.memoize = false;
+            return expression;
         }
     }
 
@@ -0,0 +1,152 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.math.ChunkPos;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A set of chunk coordinates, stored as one 1024-bit bitmap per 32x32 chunk region.
+ * Serialized as packed int arrays: per region its x and z, followed by the bitmap as 32 ints.
+ */
+public class ChunkBitmap
+{
+    public static final int REGION_SHIFT = 5;
+    public static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    public static final int WORDS = (1 << (REGION_SHIFT * 2)) / 64;
+
+    private static final int PACKED_REGION_INTS = 2 + WORDS * 2;
+
+    private final Long2ObjectOpenHashMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+    private int size;
+
+    public static long regionKey(int regionX, int regionZ)
+    {
+        return ChunkPos.asLong(regionX, regionZ);
+    }
+
+    private static int bit(int x, int z)
+    {
+        return ((z & REGION_MASK) << REGION_SHIFT) | (x & REGION_MASK);
+    }
+
+    public boolean add(int x, int z)
+    {
+        long key = regionKey(x >> REGION_SHIFT, z >> REGION_SHIFT);
+        long[] words = regions.get(key);
+        if (words == null)
+            regions.put(key, words = new long[WORDS]);
+
+        int bit = bit(x, z);
+        long mask = 1L << bit;
+        if ((words[bit >> 6] & mask) != 0)
+            return false;
+
+        words[bit >> 6] |= mask;
+        size++;
+        return true;
+    }
+
+    public boolean contains(int x, int z)
+    {
+        long[] words = regions.get(regionKey(x >> REGION_SHIFT, z >> REGION_SHIFT));
+        if (words == null)
+            return false;
+
+        int bit = bit(x, z);
+        return (words[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        regions.clear();
+        size = 0;
+    }
+
+    /**
+     * @return A view of the keys (see {@link #regionKey(int, int)}) of all regions with at least one chunk.
+     */
+    @Nonnull
+    public LongSet regionKeys()
+    {
+        return regions.keySet();
+    }
+
+    /**
+     * Adds all chunks of a packed array, as written by {@link #write()} or {@link #write(int, int)}.
+     */
+    public void read(@Nonnull int[] packed)
+    {
+        for (int offset = 0; offset + PACKED_REGION_INTS <= packed.length; offset += PACKED_REGION_INTS)
+        {
+            long key = regionKey(packed[offset], packed[offset + 1]);
+            long[] words = regions.get(key);
+            if (words == null)
+                regions.put(key, words = new long[WORDS]);
+
+            for (int i = 0; i < WORDS; i++)
+            {
+                long word = ((long) packed[offset + 2 + i * 2] << 32) | (packed[offset + 3 + i * 2] & 0xffffffffL);
+                size += Long.bitCount(word & ~words[i]);
+                words[i] |= word;
+            }
+        }
+    }
+
+    @Nonnull
+    public int[] write()
+    {
+        int[] packed = new int[regions.size() * PACKED_REGION_INTS];
+        int offset = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : regions.long2ObjectEntrySet())
+        {
+            pack(entry.getLongKey(), entry.getValue(), packed, offset);
+            offset += PACKED_REGION_INTS;
+        }
+        return packed;
+    }
+
+    /**
+     * @return The packed bitmap of a single region, or an empty array if it has no chunks.
+     */
+    @Nonnull
+    public int[] write(int regionX, int regionZ)
+    {
+        long key = regionKey(regionX, regionZ);
+        long[] words = regions.get(key);
+        if (words == null)
+            return new int[0];
+
+        int[] packed = new int[PACKED_REGION_INTS];
+        pack(key, words, packed, 0);
+        return packed;
+    }
+
+    private static void pack(long key, long[] words, int[] packed, int offset)
+    {
+        packed[offset] = (int) (key & 0xffffffffL);
+        packed[offset + 1] = (int) (key >>> 32);
+        for (int i = 0; i < WORDS; i++)
+        {
+            packed[offset + 2 + i * 2] = (int) (words[i] >>> 32);
+            packed[offset + 3 + i * 2] = (int) words[i];
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Sets blocks straight into the sections of chunks no player is watching, skipping the per-block height map,
+ * light and client updates of {@link WorldServer#setBlockState(BlockPos, IBlockState, int)}.
+ * The touched chunks are relit once on {@link #flush()}.
+ */
+public class DirectBlockWriter
+{
+    public final WorldServer world;
+
+    // Per chunk, a mask of the sections that were written to
+    private final Long2IntOpenHashMap dirtySections = new Long2IntOpenHashMap();
+
+    private long lastChunkKey;
+    private Chunk lastChunk;
+    private boolean lastChunkWritable;
+
+    public DirectBlockWriter(WorldServer world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * @return Whether the block was set. If not, it must be set through the world.
+     */
+    public boolean setBlockState(BlockPos pos, IBlockState state)
+    {
+        int y = pos.getY();
+        if (y < 0 || y >= world.getHeight())
+            return false;
+
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        Chunk chunk = writableChunk(key, pos.getX() >> 4, pos.getZ() >> 4);
+        if (chunk == null)
+            return false;
+
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        ExtendedBlockStorage storage = storages[y >> 4];
+        int x = pos.getX() & 15, z = pos.getZ() & 15;
+
+        IBlockState previous = storage != Chunk.NULL_BLOCK_STORAGE ? storage.get(x, y & 15, z) : Blocks.AIR.getDefaultState();
+        if (previous == state)
+            return true;
+
+        Block previousBlock = previous.getBlock(), block = state.getBlock();
+
+        // Tile entities and block light need the full treatment
+        if (previousBlock.hasTileEntity(previous) || block.hasTileEntity(state)
+                || previous.getLightValue(world, pos) > 0 || state.getLightValue(world, pos) > 0)
+            return false;
+
+        if (storage == Chunk.NULL_BLOCK_STORAGE)
+        {
+            if (block == Blocks.AIR)
+                return true;
+
+            storages[y >> 4] = storage = new ExtendedBlockStorage(y >> 4 << 4, world.provider.hasSkyLight());
+        }
+
+        storage.set(x, y & 15, z, state);
+
+        if (previousBlock != block)
+        {
+            // Like Chunk.setBlockState; blocks may keep the position, e.g. for scheduled updates
+            BlockPos immutable = pos.toImmutable();
+            previousBlock.breakBlock(world, immutable, previous);
+            block.onBlockAdded(world, immutable, state);
+        }
+
+        dirtySections.put(key, dirtySections.get(key) | 1 << (y >> 4));
+        chunk.markDirty();
+
+        return true;
+    }
+
+    protected Chunk writableChunk(long key, int chunkX, int chunkZ)
+    {
+        if (lastChunk == null || key != lastChunkKey)
+        {
+            lastChunkKey = key;
+            lastChunk = world.getChunkProvider().getLoadedChunk(chunkX, chunkZ);
+            lastChunkWritable = lastChunk != null && !world.getPlayerChunkMap().contains(chunkX, chunkZ);
+        }
+
+        return lastChunkWritable ? lastChunk : null;
+    }
+
+    /**
+     * Relights all chunks written to since the last flush. The height map and sky light of their columns are
+     * recomputed right away; the rest of the light is left to the vanilla pass that runs before a chunk is first
+     * sent to players. Chunks that became visible since are sent again, once per changed section.
+     */
+    public void flush()
+    {
+        for (Long2IntMap.Entry entry : dirtySections.long2IntEntrySet())
+        {
+            long key = entry.getLongKey();
+            int chunkX = (int) key, chunkZ = (int) (key >> 32);
+
+            Chunk chunk = world.getChunkProvider().getLoadedChunk(chunkX, chunkZ);
+            if (chunk == null)
+                continue;
+
+            chunk.generateSkylightMap();
+            chunk.setLightPopulated(false);
+
+            PlayerChunkMapEntry watchers = world.getPlayerChunkMap().getEntry(chunkX, chunkZ);
+            if (watchers != null && watchers.isSentToPlayers())
+                watchers.sendPacket(new SPacketChunkData(chunk, entry.getIntValue()));
+        }
+
+        dirtySections.clear();
+        lastChunk = null;
+    }
+}
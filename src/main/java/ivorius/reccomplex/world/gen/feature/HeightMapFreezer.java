@@ -9,16 +9,14 @@ import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import ivorius.ivtoolkit.world.chunk.gen.StructureBoundingBoxes;
 import ivorius.reccomplex.utils.RCStructureBoundingBoxes;
-import ivorius.reccomplex.utils.accessor.SafeReflector;
+import ivorius.reccomplex.utils.accessor.RCAccessorChunk;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
-import net.minecraftforge.fml.relauncher.ReflectionHelper;
 
-import java.lang.reflect.Method;
 import java.util.Arrays;
 
 /**
@@ -26,9 +24,6 @@ import java.util.Arrays;
  */
 public class HeightMapFreezer
 {
-    protected static Method relightBlock;
-    protected static Method propagateSkylightOcclusion;
-
     protected StructureBoundingBox boundingBox;
 
     protected World world;
@@ -110,14 +105,13 @@ public class HeightMapFreezer
         }
     }
 
+    /**
+     * Restores the height map and relights the raised columns. Spreading the light is left to the current
+     * {@link LightingBatch}, if there is one.
+     */
     public void melt()
     {
-        if (relightBlock == null)
-            relightBlock = ReflectionHelper.findMethod(Chunk.class, "relightBlock", "func_76615_h",
-                    Integer.TYPE, Integer.TYPE, Integer.TYPE);
-        if (propagateSkylightOcclusion == null)
-            propagateSkylightOcclusion = ReflectionHelper.findMethod(Chunk.class, "propagateSkylightOcclusion", "func_76595_e",
-                    Integer.TYPE, Integer.TYPE);
+        LightingBatch batch = LightingBatch.current(world);
 
         // Restore
         RCStructureBoundingBoxes.streamMutablePositions(boundingBox).forEach(pos ->
@@ -136,11 +130,12 @@ public class HeightMapFreezer
             //noinspection ConstantConditions
             if (entry.heightMap[surfaceIndex] >= entry.original[surfaceIndex])
             {
-                SafeReflector.invoke(entry.chunk, relightBlock, null,
-                        pos.getX() & 15, entry.heightMap[surfaceIndex] + 1, pos.getZ() & 15);
-                SafeReflector.invoke(entry.chunk, propagateSkylightOcclusion, null,
-                        pos.getX() & 15, pos.getZ() & 15);
-                if (world.provider.hasSkyLight())
+                RCAccessorChunk.relightBlock(entry.chunk, pos.getX() & 15, entry.heightMap[surfaceIndex] + 1, pos.getZ() & 15);
+                RCAccessorChunk.propagateSkylightOcclusion(entry.chunk, pos.getX() & 15, pos.getZ() & 15);
+
+                if (batch != null)
+                    batch.markColumn(pos.getX(), entry.heightMap[surfaceIndex], pos.getZ());
+                else if (world.provider.hasSkyLight())
                     world.checkLight(new BlockPos(pos.getX(), entry.heightMap[surfaceIndex], pos.getZ()));
             }
         });
@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Collects the columns whose sky light needs spreading, over all structures generated in a decoration pass on a thread.
+ * When the pass closes, each column is checked once per chunk, from the highest changed block, and again from the
+ * lowest one if another structure changed it further down.
+ */
+public class LightingBatch
+{
+    private static final ThreadLocal<LightingBatch> current = new ThreadLocal<>();
+
+    public final World world;
+
+    private static final int COLUMNS = 256;
+
+    // Per chunk, the highest changed y of each column, or -1, followed by the lowest one
+    private final Long2ObjectOpenHashMap<int[]> chunks = new Long2ObjectOpenHashMap<>();
+
+    public LightingBatch(World world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Starts a pass on this thread, unless one is running already.
+     *
+     * @return Whether a pass was started, and must be closed again.
+     */
+    public static boolean open(World world)
+    {
+        if (current.get() != null)
+            return false;
+
+        current.set(new LightingBatch(world));
+        return true;
+    }
+
+    /**
+     * Ends the pass on this thread, checking the light of all collected columns.
+     */
+    public static void close()
+    {
+        LightingBatch batch = current.get();
+        current.remove();
+
+        if (batch != null)
+            batch.flush();
+    }
+
+    @Nullable
+    public static LightingBatch current(World world)
+    {
+        LightingBatch batch = current.get();
+        return batch != null && batch.world == world ? batch : null;
+    }
+
+    public void markColumn(int x, int y, int z)
+    {
+        long key = ChunkPos.asLong(x >> 4, z >> 4);
+        int[] columns = chunks.get(key);
+        if (columns == null)
+        {
+            chunks.put(key, columns = new int[COLUMNS * 2]);
+            Arrays.fill(columns, 0, COLUMNS, -1);
+            Arrays.fill(columns, COLUMNS, COLUMNS * 2, Integer.MAX_VALUE);
+        }
+
+        int index = ((z & 15) << 4) | (x & 15);
+        if (y > columns[index])
+            columns[index] = y;
+        if (y < columns[COLUMNS + index])
+            columns[COLUMNS + index] = y;
+    }
+
+    public void flush()
+    {
+        if (!world.provider.hasSkyLight())
+        {
+            chunks.clear();
+            return;
+        }
+
+        for (Long2ObjectMap.Entry<int[]> entry : chunks.long2ObjectEntrySet())
+        {
+            long key = entry.getLongKey();
+            int chunkX = (int) key, chunkZ = (int) (key >> 32);
+            int[] columns = entry.getValue();
+
+            for (int index = 0; index < COLUMNS; index++)
+            {
+                int highest = columns[index], lowest = columns[COLUMNS + index];
+                if (highest < 0)
+                    continue;
+
+                int x = (chunkX << 4) | (index & 15), z = (chunkZ << 4) | (index >> 4);
+                world.checkLight(new BlockPos(x, highest, z));
+                // Light spread from the top doesn't reach below where a later structure changed the column
+                if (lowest < highest)
+                    world.checkLight(new BlockPos(x, lowest, z));
+            }
+        }
+
+        chunks.clear();
+    }
+}
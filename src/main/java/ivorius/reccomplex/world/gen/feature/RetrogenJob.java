@@ -0,0 +1,378 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.files.RCFiles;
+import ivorius.reccomplex.files.loading.FileSuffixFilter;
+import ivorius.reccomplex.utils.algebra.ExpressionCache;
+import ivorius.reccomplex.utils.expression.ResourceExpression;
+import ivorius.reccomplex.world.gen.feature.structure.Structure;
+import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * A retro-generation run over all saved chunks of a dimension, advanced a few milliseconds every server tick.
+ * Chunks are visited region by region, in the order of the region file, and progress is saved with the world so the
+ * run continues after a restart. Chunks decorated since the last save will be decorated again after a crash.
+ */
+public class RetrogenJob extends WorldSavedData
+{
+    private static final String IDENTIFIER = RecurrentComplex.MOD_ID + "-retrogen";
+
+    public static final int REGION_CHUNKS = 32 * 32;
+
+    private static final Map<Integer, RetrogenJob> active = new HashMap<>();
+
+    public WorldServer world;
+
+    protected String expression;
+    protected Predicate<Structure> structurePredicate;
+
+    protected final LongArrayList regions = new LongArrayList();
+    protected int regionIndex;
+    protected int chunkIndex;
+
+    protected boolean paused;
+
+    protected long visitedChunks;
+    protected long generatedChunks;
+    // Chunks that exist in the regions finished so far, to estimate the total
+    protected long finishedRegionChunks;
+
+    // Session statistics, for the rate
+    protected long sessionStart;
+    protected long sessionChunks;
+
+    public RetrogenJob(String id)
+    {
+        super(id);
+    }
+
+    public RetrogenJob()
+    {
+        this(IDENTIFIER);
+    }
+
+    /**
+     * Replaces any job of the world with a new one, over all of its region files.
+     *
+     * @param expression A structure resource expression to restrict generation to, or null to decorate fully.
+     */
+    public static RetrogenJob start(WorldServer world, String expression)
+    {
+        RetrogenJob job = new RetrogenJob();
+        job.setExpression(expression);
+
+        File regionDirectory = RCFiles.getValidatedFolder(new File(world.getChunkSaveLocation(), "region"), false);
+        String[] files = regionDirectory != null ? regionDirectory.list(new FileSuffixFilter("mca")) : null;
+        if (files != null)
+        {
+            for (String file : files)
+            {
+                String[] parts = file.split("\\.");
+                if (parts.length != 4 || !parts[0].equals("r"))
+                    continue;
+
+                try
+                {
+                    job.regions.add(ChunkPos.asLong(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                }
+                catch (NumberFormatException ignored)
+                {
+                }
+            }
+        }
+        // Visit regions in a stable order
+        job.regions.sort(null);
+
+        world.getPerWorldStorage().setData(job.mapName, job);
+        job.bind(world);
+        job.markDirty();
+
+        return job;
+    }
+
+    public static RetrogenJob get(World world)
+    {
+        return (RetrogenJob) world.getPerWorldStorage().getOrLoadData(RetrogenJob.class, IDENTIFIER);
+    }
+
+    /**
+     * Resumes the saved job of a world, if it has one.
+     */
+    public static void load(WorldServer world)
+    {
+        RetrogenJob job = get(world);
+        if (job != null && !job.isDone())
+            job.bind(world);
+    }
+
+    public static void unload(World world)
+    {
+        synchronized (active)
+        {
+            active.remove(world.provider.getDimension());
+        }
+    }
+
+    /**
+     * Advances all running jobs, within the configured time budget.
+     */
+    public static void tickAll()
+    {
+        RetrogenJob[] jobs;
+        synchronized (active)
+        {
+            if (active.isEmpty())
+                return;
+            jobs = active.values().toArray(new RetrogenJob[0]);
+        }
+
+        long budget = RCConfig.retrogenTickBudget * 1000000L / jobs.length;
+        for (RetrogenJob job : jobs)
+        {
+            if (!job.paused && !job.isDone())
+                job.tick(System.nanoTime() + budget);
+        }
+    }
+
+    protected void bind(WorldServer world)
+    {
+        this.world = world;
+        synchronized (active)
+        {
+            active.put(world.provider.getDimension(), this);
+        }
+    }
+
+    protected void setExpression(String expression)
+    {
+        this.expression = expression;
+
+        if (expression != null)
+        {
+            ResourceExpression matcher = ExpressionCache.of(new ResourceExpression(s -> !s.isEmpty()), expression);
+            structurePredicate = s -> matcher.test(StructureRegistry.INSTANCE.resourceLocation(s));
+        }
+        else
+            structurePredicate = null;
+    }
+
+    public static Random getRandom(WorldServer world, ChunkPos pos)
+    {
+        return world.setRandomSeed(pos.x, pos.z, 0xDEADBEEF);
+    }
+
+    /**
+     * Decorates chunks until the deadline (in {@link System#nanoTime()}) has passed, at least one.
+     */
+    public void tick(long deadline)
+    {
+        if (sessionStart == 0)
+            sessionStart = System.currentTimeMillis();
+
+        File saveLocation = world.getChunkSaveLocation();
+
+        do
+        {
+            long region = regions.getLong(regionIndex);
+            int regionX = WorldStructureDataShards.regionX(region), regionZ = WorldStructureDataShards.regionZ(region);
+
+            // Opened files are cached, so this is cheap per chunk
+            RegionFile regionFile = regionFileExists(saveLocation, regionX, regionZ)
+                    ? RegionFileCache.createOrLoadRegionFile(saveLocation, regionX << 5, regionZ << 5)
+                    : null;
+
+            if (regionFile == null)
+            {
+                // Deleted since the job started; opening it would create it anew
+                chunkIndex = REGION_CHUNKS - 1;
+            }
+            else if (regionFile.chunkExists(chunkIndex & 31, chunkIndex >> 5))
+            {
+                ChunkPos pos = new ChunkPos((regionX << 5) + (chunkIndex & 31), (regionZ << 5) + (chunkIndex >> 5));
+                Chunk chunk = world.getChunkFromChunkCoords(pos.x, pos.z);
+
+                if (chunk.isTerrainPopulated() && WorldGenStructures.decorate(world, getRandom(world, pos), pos, structurePredicate))
+                    generatedChunks++;
+
+                // Don't keep the whole map loaded
+                if (!world.getPlayerChunkMap().contains(pos.x, pos.z))
+                    world.getChunkProvider().queueUnload(chunk);
+
+                visitedChunks++;
+                sessionChunks++;
+            }
+
+            if (++chunkIndex >= REGION_CHUNKS)
+            {
+                chunkIndex = 0;
+                regionIndex++;
+                finishedRegionChunks = visitedChunks;
+            }
+        }
+        while (!isDone() && System.nanoTime() < deadline);
+
+        markDirty();
+
+        if (isDone())
+        {
+            unload(world);
+            RecurrentComplex.logger.info(String.format("Retro-generation finished in dimension %d: %d of %d chunks generated", world.provider.getDimension(), generatedChunks, visitedChunks));
+        }
+    }
+
+    protected static boolean regionFileExists(File saveLocation, int regionX, int regionZ)
+    {
+        return new File(new File(saveLocation, "region"), "r." + regionX + "." + regionZ + ".mca").exists();
+    }
+
+    public boolean isDone()
+    {
+        return regionIndex >= regions.size();
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    public void setPaused(boolean paused)
+    {
+        this.paused = paused;
+        sessionStart = 0;
+        sessionChunks = 0;
+        markDirty();
+    }
+
+    public void cancel()
+    {
+        regionIndex = regions.size();
+        chunkIndex = 0;
+        if (world != null)
+            unload(world);
+        markDirty();
+    }
+
+    public String getExpression()
+    {
+        return expression;
+    }
+
+    public long getVisitedChunks()
+    {
+        return visitedChunks;
+    }
+
+    public long getGeneratedChunks()
+    {
+        return generatedChunks;
+    }
+
+    public int getRegionIndex()
+    {
+        return regionIndex;
+    }
+
+    public int getRegionCount()
+    {
+        return regions.size();
+    }
+
+    /**
+     * @return The estimated number of chunks of the job, extrapolated from the regions visited so far.
+     */
+    public long getEstimatedChunks()
+    {
+        if (isDone())
+            return visitedChunks;
+
+        double perRegion = regionIndex > 0 ? (double) finishedRegionChunks / regionIndex : REGION_CHUNKS;
+        double remainingRegions = regions.size() - regionIndex - (double) chunkIndex / REGION_CHUNKS;
+        return visitedChunks + (long) (remainingRegions * perRegion);
+    }
+
+    /**
+     * @return The chunks decorated per second since the job was last (re)started.
+     */
+    public double getChunksPerSecond()
+    {
+        long elapsed = sessionStart > 0 ? System.currentTimeMillis() - sessionStart : 0;
+        return elapsed > 0 ? sessionChunks * 1000.0 / elapsed : 0;
+    }
+
+    /**
+     * @return The estimated remaining seconds, or -1 if unknown.
+     */
+    public long getSecondsRemaining()
+    {
+        double rate = getChunksPerSecond();
+        return rate > 0 ? (long) (Math.max(0, getEstimatedChunks() - visitedChunks) / rate) : -1;
+    }
+
+    @Override
+    public void readFromNBT(@Nonnull NBTTagCompound compound)
+    {
+        setExpression(compound.hasKey("expression", Constants.NBT.TAG_STRING) ? compound.getString("expression") : null);
+
+        regions.clear();
+        int[] packed = compound.getIntArray("regions");
+        for (int i = 0; i + 1 < packed.length; i += 2)
+            regions.add(ChunkPos.asLong(packed[i], packed[i + 1]));
+
+        regionIndex = compound.getInteger("regionIndex");
+        chunkIndex = compound.getInteger("chunkIndex");
+        paused = compound.getBoolean("paused");
+
+        visitedChunks = compound.getLong("visitedChunks");
+        generatedChunks = compound.getLong("generatedChunks");
+        finishedRegionChunks = compound.getLong("finishedRegionChunks");
+    }
+
+    @Nonnull
+    @Override
+    public NBTTagCompound writeToNBT(@Nonnull NBTTagCompound compound)
+    {
+        if (expression != null)
+            compound.setString("expression", expression);
+
+        int[] packed = new int[regions.size() * 2];
+        for (int i = 0; i < regions.size(); i++)
+        {
+            packed[i * 2] = WorldStructureDataShards.regionX(regions.getLong(i));
+            packed[i * 2 + 1] = WorldStructureDataShards.regionZ(regions.getLong(i));
+        }
+        compound.setIntArray("regions", packed);
+
+        compound.setInteger("regionIndex", regionIndex);
+        compound.setInteger("chunkIndex", chunkIndex);
+        compound.setBoolean("paused", paused);
+
+        compound.setLong("visitedChunks", visitedChunks);
+        compound.setLong("generatedChunks", generatedChunks);
+        compound.setLong("finishedRegionChunks", finishedRegionChunks);
+
+        return compound;
+    }
+}
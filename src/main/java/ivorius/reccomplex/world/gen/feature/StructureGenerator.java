@@ -22,6 +22,7 @@ import ivorius.reccomplex.world.gen.feature.structure.context.StructureLoadConte
 import ivorius.reccomplex.world.gen.feature.structure.context.StructurePrepareContext;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructureSpawnContext;
 import ivorius.reccomplex.world.gen.feature.structure.generic.generation.GenerationType;
+import ivorius.reccomplex.world.gen.feature.structure.generic.placement.ColumnMatchCache;
 import ivorius.reccomplex.world.gen.feature.structure.generic.placement.StructurePlaceContext;
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.RunTransformer;
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.TransformerMulti;
@@ -158,7 +159,7 @@ public class StructureGenerator<S extends NBTStorable>
                 return failGenerate(GenerationResult.Failure.outOfBounds);
             }
 
-            if (RCConfig.avoidOverlappingGeneration && !allowOverlaps && !WorldStructureGenerationData.get(world).entriesAt(boundingBox).noneMatch(WorldStructureGenerationData.Entry::blocking)) {
+            if (RCConfig.avoidOverlappingGeneration && !allowOverlaps && WorldStructureGenerationData.get(world).hasEntryIntersecting(boundingBox, WorldStructureGenerationData.Entry::blocking)) {
                 return failGenerate(GenerationResult.Failure.structureOverlap);
             }
 
@@ -182,7 +183,10 @@ public class StructureGenerator<S extends NBTStorable>
             return failGenerate(new GenerationResult.Failure.Exception(e));
         }
         finally {
+            spawn.close();
             RCWorldgenMonitor.stop();
+            // The world changed, placers need to look again
+            ColumnMatchCache.invalidate();
         }
 
         if (!firstTime)
@@ -206,7 +210,8 @@ public class StructureGenerator<S extends NBTStorable>
         structureEntry.seed = seed();
 
         try {
-            structureEntry.instanceData = instanceData.writeToNBT();
+            structureEntry.setInstanceData(instanceData.writeToNBT());
+            StructureInstanceDataCache.INSTANCE.put(structureEntry.getUuid(), structure, instanceData);
         }
         catch (Exception e) {
             RecurrentComplex.logger.error(String.format("Error saving instance data for structure %s in %s", structure, boundingBox), e);
@@ -227,10 +232,14 @@ public class StructureGenerator<S extends NBTStorable>
                     continue; // Skip those that we just generated in, especially the same chunk
 
                 RCWorldgenMonitor.start("pre-complementing " + structureID());
-                structure.generate(spawn().get(), instanceData, RCConfig.getUniversalTransformer());
+                try (StructureSpawnContext complementSpawn = spawn().get()) {
+                    structure.generate(complementSpawn, instanceData, RCConfig.getUniversalTransformer());
+                }
                 RCWorldgenMonitor.stop();
             }
             generationBB(oldBB);
+
+            ColumnMatchCache.invalidate();
         }
 
         return new GenerationResult.Success.New(structureEntry);
@@ -262,7 +271,7 @@ public class StructureGenerator<S extends NBTStorable>
         if (boundingBox.minY < MIN_DIST_TO_LIMIT || boundingBox.maxY > world.getHeight() - 1 - MIN_DIST_TO_LIMIT)
             return GenerationResult.Failure.outOfBounds;
 
-        if (RCConfig.avoidOverlappingGeneration && !allowOverlaps && !WorldStructureGenerationData.get(world).entriesAt(boundingBox).noneMatch(WorldStructureGenerationData.Entry::blocking))
+        if (RCConfig.avoidOverlappingGeneration && !allowOverlaps && WorldStructureGenerationData.get(world).hasEntryIntersecting(boundingBox, WorldStructureGenerationData.Entry::blocking))
             return GenerationResult.Failure.structureOverlap;
 
         return GenerationResult.Success.contemporary;
@@ -0,0 +1,96 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.files.SimpleLeveledRegistry;
+import ivorius.reccomplex.nbt.NBTStorable;
+import ivorius.reccomplex.world.gen.feature.structure.Structure;
+import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded LRU of decoded instance data of generated structures, keyed by entry UUID.
+ * Structures are complemented chunk by chunk, so this spares decoding the same instance data for every chunk.
+ * Entries are validated against the structure they were loaded for.
+ */
+public class StructureInstanceDataCache
+{
+    public static final StructureInstanceDataCache INSTANCE = new StructureInstanceDataCache();
+
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<UUID, Entry>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest)
+        {
+            return size() > RCConfig.instanceDataCacheSize;
+        }
+    };
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <S extends NBTStorable> S get(@Nonnull UUID uuid, @Nonnull Structure<S> structure)
+    {
+        synchronized (entries)
+        {
+            Entry entry = entries.get(uuid);
+            return entry != null && entry.structure == structure ? (S) entry.instanceData : null;
+        }
+    }
+
+    public <S extends NBTStorable> void put(@Nonnull UUID uuid, @Nonnull Structure<S> structure, @Nonnull S instanceData)
+    {
+        if (RCConfig.instanceDataCacheSize <= 0)
+            return;
+
+        synchronized (entries)
+        {
+            entries.put(uuid, new Entry(structure, instanceData));
+        }
+    }
+
+    public void invalidate(@Nonnull UUID uuid)
+    {
+        synchronized (entries)
+        {
+            entries.remove(uuid);
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    private static class Entry
+    {
+        public final Structure<?> structure;
+        public final NBTStorable instanceData;
+
+        public Entry(Structure<?> structure, NBTStorable instanceData)
+        {
+            this.structure = structure;
+            this.instanceData = instanceData;
+        }
+    }
+
+    public static class Module extends SimpleLeveledRegistry.Module<StructureRegistry>
+    {
+        @Override
+        public void invalidate()
+        {
+            INSTANCE.clear();
+        }
+    }
+}
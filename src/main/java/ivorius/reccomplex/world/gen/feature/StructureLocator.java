@@ -102,23 +102,13 @@ public class StructureLocator
     protected static List<StaticCandidate> staticCandidatesInChunk(WorldServer world, ChunkPos chunkPos)
     {
         List<StaticCandidate> candidates = new ArrayList<>();
-        BlockPos spawnPos = world.getSpawnPoint();
 
-        for (Pair<Structure<?>, StaticGeneration> pair : StructureRegistry.INSTANCE.getGenerationTypes(StaticGeneration.class))
+        StaticGeneration.structuresAt(StructureRegistry.INSTANCE, chunkPos, world, world.getSpawnPoint()).forEach(triple ->
         {
-            Structure<?> structure = pair.getLeft();
-            StaticGeneration generation = pair.getRight();
-
-            if (!generation.dimensionExpression.test(world.provider))
-                continue;
-
-            String structureID = StructureRegistry.INSTANCE.id(structure);
-            if (structureID == null)
-                continue;
-
-            staticPositionsInChunk(generation, chunkPos, spawnPos)
-                    .forEach(pos -> candidates.add(new StaticCandidate(structureID, structure, generation, pos)));
-        }
+            String structureID = StructureRegistry.INSTANCE.id(triple.getLeft());
+            if (structureID != null)
+                candidates.add(new StaticCandidate(structureID, triple.getLeft(), triple.getMiddle(), triple.getRight()));
+        });
 
         return candidates;
     }
@@ -0,0 +1,215 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.world.gen.feature.selector.MixingStructureSelector;
+import ivorius.reccomplex.world.gen.feature.selector.NaturalStructureSelector;
+import ivorius.reccomplex.world.gen.feature.structure.Structure;
+import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
+import ivorius.reccomplex.world.gen.feature.structure.generic.GenericStructure;
+import ivorius.reccomplex.world.gen.feature.structure.generic.generation.NaturalGeneration;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.biome.Biome;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the caches of structures that chunks next to the generation frontier will get, on worker threads.
+ * <p>
+ * Worlds can't be read off-thread, so inputs (biomes, selectors, static candidates) are snapshotted on the server thread,
+ * and the population random is reproduced like {@link StructureLocator} does. The structures found get their world data
+ * decoded and their placement plan compiled for the transform they will use. Nothing else is computed ahead: placement,
+ * instance data and generation read the live world, and stay on the server thread. They go through the same caches,
+ * so results are identical whether or not a prefetch was done - or right.
+ */
+public class StructurePrefetcher
+{
+    private static final int QUEUE_SIZE = 256;
+    private static final int MEMORY_SIZE = 4096;
+
+    @Nullable
+    private static ThreadPoolExecutor executor;
+
+    private static final Set<Pair<Integer, Long>> prefetched = Collections.newSetFromMap(new LinkedHashMap<Pair<Integer, Long>, Boolean>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Pair<Integer, Long>, Boolean> eldest)
+        {
+            return size() > MEMORY_SIZE;
+        }
+    });
+
+    /**
+     * Schedules prefetching for the unchecked neighbors of a chunk that is being decorated. Must be called on the server thread.
+     */
+    public static void prefetchAround(WorldServer world, ChunkPos chunkPos)
+    {
+        int threads = RCConfig.structurePrefetchThreads;
+        if (threads <= 0)
+            return;
+
+        if (RCConfig.honorStructureGenerationOption && !world.getWorldInfo().isMapFeaturesEnabled())
+            return;
+
+        ThreadPoolExecutor executor = executor(threads);
+        // Falling behind; don't spend server time on snapshots that would push out others
+        if (executor.getQueue().remainingCapacity() == 0)
+            return;
+
+        WorldStructureGenerationData data = WorldStructureGenerationData.get(world);
+        int dimension = world.provider.getDimension();
+
+        for (int x = -1; x <= 1; x++)
+            for (int z = -1; z <= 1; z++)
+            {
+                ChunkPos neighbor = new ChunkPos(chunkPos.x + x, chunkPos.z + z);
+
+                boolean checked;
+                synchronized (data)
+                {
+                    checked = data.isChunkChecked(neighbor);
+                }
+                if (checked || !markPrefetched(dimension, neighbor))
+                    continue;
+
+                executor.execute(new Snapshot(world, dimension, neighbor));
+            }
+    }
+
+    private static boolean markPrefetched(int dimension, ChunkPos chunkPos)
+    {
+        synchronized (prefetched)
+        {
+            return prefetched.add(Pair.of(dimension, ChunkPos.asLong(chunkPos.x, chunkPos.z)));
+        }
+    }
+
+    private static void unmarkPrefetched(int dimension, ChunkPos chunkPos)
+    {
+        synchronized (prefetched)
+        {
+            prefetched.remove(Pair.of(dimension, ChunkPos.asLong(chunkPos.x, chunkPos.z)));
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor executor(int threads)
+    {
+        if (executor == null)
+        {
+            // Drop the oldest requests when falling behind, the frontier has moved on from them
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), r ->
+            {
+                Thread thread = new Thread(r, "ReC Structure Prefetcher");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }, (r, e) ->
+            {
+                if (e.isShutdown())
+                    return;
+
+                // Unmark, so the chunk may be prefetched again if it comes up later
+                Runnable oldest = e.getQueue().poll();
+                if (oldest instanceof Snapshot)
+                    unmarkPrefetched(((Snapshot) oldest).dimension, ((Snapshot) oldest).chunkPos);
+                e.execute(r);
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        else if (executor.getMaximumPoolSize() != threads)
+        {
+            if (threads > executor.getMaximumPoolSize())
+            {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            }
+            else
+            {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+
+        return executor;
+    }
+
+    protected static void prepare(Structure<?> structure, long seed)
+    {
+        if (structure instanceof GenericStructure)
+        {
+            // The transform only depends on the seed
+            ((GenericStructure) structure).decodedWorldData()
+                    .placementPlan(new StructureGenerator<>(structure).seed(seed).transform());
+        }
+    }
+
+    /**
+     * Everything about a chunk that prefetching needs from the world, read on the server thread.
+     */
+    protected static class Snapshot implements Runnable
+    {
+        public final int dimension;
+        public final ChunkPos chunkPos;
+        public final long worldSeed;
+
+        public final List<StructureLocator.StaticCandidate> staticCandidates;
+
+        @Nullable
+        public final MixingStructureSelector<NaturalGeneration, NaturalStructureSelector.Category> selector;
+        public final Biome biome;
+        public final WorldProvider provider;
+        public final float distanceToSpawn;
+
+        public Snapshot(WorldServer world, int dimension, ChunkPos chunkPos)
+        {
+            this.dimension = dimension;
+            this.chunkPos = chunkPos;
+            this.worldSeed = world.getSeed();
+
+            staticCandidates = StructureLocator.staticCandidatesInChunk(world, chunkPos);
+
+            selector = StructureLocator.mayGenerateNaturally(world, chunkPos)
+                    ? NaturalGeneration.selectors(StructureRegistry.INSTANCE).get(world.getBiome(chunkPos.getBlock(8, 0, 8)), world.provider)
+                    : null;
+            biome = world.getBiome(chunkPos.getBlock(0, 0, 0));
+            provider = world.provider;
+            distanceToSpawn = StructureLocator.chunkDistance(new ChunkPos(world.getSpawnPoint()), chunkPos);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // Consume the random just like WorldGenStructures.decorate
+                Random random = StructureLocator.populationRandom(worldSeed, chunkPos);
+
+                for (StructureLocator.Seeded<StructureLocator.StaticCandidate> candidate : StructureLocator.seedCandidates(staticCandidates, random))
+                    prepare(candidate.item.structure, candidate.seed);
+
+                if (selector != null)
+                {
+                    for (Pair<Structure<?>, NaturalGeneration> pair : selector.generatedStructures(random, biome, provider, distanceToSpawn))
+                        prepare(pair.getLeft(), random.nextLong());
+                }
+            }
+            catch (Exception e)
+            {
+                // Prefetching is only a head start, generation will redo everything it needs
+                RecurrentComplex.logger.debug("Failed prefetching structures in " + chunkPos, e);
+            }
+        }
+    }
+}
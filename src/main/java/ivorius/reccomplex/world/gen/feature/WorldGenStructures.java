@@ -9,6 +9,7 @@ import ivorius.ivtoolkit.blocks.BlockSurfacePos;
 import ivorius.ivtoolkit.math.IvVecMathHelper;
 import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.nbt.NBTStorable;
 import ivorius.reccomplex.world.gen.feature.selector.MixingStructureSelector;
 import ivorius.reccomplex.world.gen.feature.selector.NaturalStructureSelector;
 import ivorius.reccomplex.world.gen.feature.structure.Structure;
@@ -17,6 +18,8 @@ import ivorius.reccomplex.world.gen.feature.structure.Structures;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructureSpawnContext;
 import ivorius.reccomplex.world.gen.feature.structure.generic.generation.NaturalGeneration;
 import ivorius.reccomplex.world.gen.feature.structure.generic.generation.StaticGeneration;
+import ivorius.reccomplex.world.gen.feature.structure.generic.placement.ColumnMatchCache;
+import net.minecraft.nbt.NBTBase;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
@@ -181,10 +184,10 @@ public class WorldGenStructures
     {
         String structureName = StructureRegistry.INSTANCE.id(structure);
 
-        BlockSurfacePos genPos = randomSurfacePos(chunkPos, seed);
-
         if (!naturalGenInfo.hasLimitations() || naturalGenInfo.getLimitations().areResolved(world, structureName))
         {
+            BlockSurfacePos genPos = randomSurfacePos(chunkPos, seed);
+
             StructureGenerator<?> generator = new StructureGenerator<>(structure).world(world).generationInfo(naturalGenInfo)
                     .seed(seed).maturity(StructureSpawnContext.GenerateMaturity.SUGGEST)
                     .randomPosition(genPos, naturalGenInfo.placer).fromCenter(true)
@@ -225,24 +228,20 @@ public class WorldGenStructures
                     continue;
                 }
 
-                if (entry.instanceData == null && !entry.firstTime)
+                if (!entry.hasInstanceData() && !entry.firstTime)
                 {
                     RecurrentComplex.logger.warn(String.format("Can't find instance data of %s (%s) to complement in %s (%d)", entry.getStructureID(), entry.getUuid(), chunkPos, world.provider.getDimension()));
                     continue;
                 }
 
-                new StructureGenerator<>(structure).world(world).generationInfo(entry.generationInfoID)
+                complement(new StructureGenerator<>(structure).world(world).generationInfo(entry.generationInfoID)
                         .seed(chunkSeed(entry.seed, chunkPos)).boundingBox(entry.boundingBox).transform(entry.transform).generationBB(Structures.chunkBoundingBox(chunkPos, true))
-                        .structureID(entry.getStructureID()).instanceData(entry.instanceData)
+                        .structureID(entry.getStructureID())
                         // Could use entry.firstTime but then StructureGenerator would add a new entry
-                        .maturity(StructureSpawnContext.GenerateMaturity.COMPLEMENT)
-                        .generate();
+                        .maturity(StructureSpawnContext.GenerateMaturity.COMPLEMENT), entry);
 
                 if (entry.firstTime)
-                {
-                    entry.firstTime = false;
-                    data.markDirty();
-                }
+                    data.changeEntry(entry, e -> e.firstTime = false);
             }
             finally
             {
@@ -251,6 +250,27 @@ public class WorldGenStructures
         }
     }
 
+    protected static <S extends NBTStorable> void complement(StructureGenerator<S> generator, WorldStructureGenerationData.StructureEntry entry)
+    {
+        if (entry.hasInstanceData())
+        {
+            S instanceData = StructureInstanceDataCache.INSTANCE.get(entry.getUuid(), generator.structure());
+
+            NBTBase nbt;
+            if (instanceData == null && (nbt = entry.getInstanceData()) != null)
+            {
+                instanceData = generator.instanceData(nbt).instanceData().orElse(null);
+                if (instanceData != null)
+                    StructureInstanceDataCache.INSTANCE.put(entry.getUuid(), generator.structure(), instanceData);
+            }
+
+            if (instanceData != null)
+                generator.instanceData(instanceData);
+        }
+
+        generator.generate();
+    }
+
     public static long chunkSeed(long seed, ChunkPos chunkPos)
     {
         // From world.setRandomSeed
@@ -292,39 +312,56 @@ public class WorldGenStructures
                 finalCheckPassed = data.checkChunkFinal(chunkPos);
         }
 
-        if (structurePredicate == null)
-            complementStructuresInChunk(chunkPos, world, complement);
-
-        List<Pair<Long, ChunkLockHolder>> chunkLocks = lockChunks(Stream.of(chunkPos));
+        // Spread the light of all structures of the chunk at once
+        boolean openedLightingBatch = LightingBatch.open(world);
         try
         {
-            if ((!RCConfig.honorStructureGenerationOption || worldWantsStructures)
-                    && (structurePredicate == null || !RecurrentComplex.PARTIALLY_SPAWN_NATURAL_STRUCTURES || finalCheckPassed))
+            if (structurePredicate == null)
+                complementStructuresInChunk(chunkPos, world, complement);
+
+            List<Pair<Long, ChunkLockHolder>> chunkLocks = lockChunks(Stream.of(chunkPos));
+            // Share placer lookups between all structures of the chunk
+            boolean openedColumnCache = ColumnMatchCache.open(world);
+            try
             {
-                Biome biomeGen = world.getBiome(chunkPos.getBlock(8, 0, 8));
-                BlockPos spawnPos = world.getSpawnPoint();
+                if ((!RCConfig.honorStructureGenerationOption || worldWantsStructures)
+                        && (structurePredicate == null || !RecurrentComplex.PARTIALLY_SPAWN_NATURAL_STRUCTURES || finalCheckPassed))
+                {
+                    Biome biomeGen = world.getBiome(chunkPos.getBlock(8, 0, 8));
+                    BlockPos spawnPos = world.getSpawnPoint();
 
-                planStaticStructuresInChunk(random, chunkPos, world, spawnPos, structurePredicate);
+                    planStaticStructuresInChunk(random, chunkPos, world, spawnPos, structurePredicate);
 
-                boolean mayGenerate = RCConfig.isGenerationEnabled(biomeGen) && RCConfig.isGenerationEnabled(world.provider);
+                    boolean mayGenerate = RCConfig.isGenerationEnabled(biomeGen) && RCConfig.isGenerationEnabled(world.provider);
 
-                if (world.provider.getDimension() == 0)
-                {
-                    double distToSpawn = IvVecMathHelper.distanceSQ(new double[]{chunkPos.x * 16 + 8, chunkPos.z * 16 + 8}, new double[]{spawnPos.getX(), spawnPos.getZ()});
-                    mayGenerate &= distToSpawn >= RCConfig.minDistToSpawnForGeneration * RCConfig.minDistToSpawnForGeneration;
-                }
+                    if (world.provider.getDimension() == 0)
+                    {
+                        double distToSpawn = IvVecMathHelper.distanceSQ(new double[]{chunkPos.x * 16 + 8, chunkPos.z * 16 + 8}, new double[]{spawnPos.getX(), spawnPos.getZ()});
+                        mayGenerate &= distToSpawn >= RCConfig.minDistToSpawnForGeneration * RCConfig.minDistToSpawnForGeneration;
+                    }
 
-                if (mayGenerate)
-                    planStructuresInChunk(random, chunkPos, world, biomeGen, structurePredicate);
+                    if (mayGenerate)
+                        planStructuresInChunk(random, chunkPos, world, biomeGen, structurePredicate);
 
-                generated = true;
+                    generated = true;
+                }
+            }
+            finally
+            {
+                if (openedColumnCache)
+                    ColumnMatchCache.close();
+                unlockChunks(chunkLocks);
             }
         }
         finally
         {
-            unlockChunks(chunkLocks);
+            if (openedLightingBatch)
+                LightingBatch.close();
         }
 
+        if (structurePredicate == null)
+            StructurePrefetcher.prefetchAround(world, chunkPos);
+
         return generated;
     }
 }
@@ -0,0 +1,157 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import ivorius.reccomplex.RecurrentComplex;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File storage of per-region (32x32 chunks) shards of {@link WorldStructureGenerationData}.
+ * Shards are compressed NBT files named like vanilla region files, in the dimension's data folder.
+ */
+public class WorldStructureDataShards
+{
+    public static final int REGION_SHIFT = ChunkBitmap.REGION_SHIFT;
+
+    @Nonnull
+    public final File directory;
+
+    public WorldStructureDataShards(@Nonnull File directory)
+    {
+        this.directory = directory;
+    }
+
+    @Nullable
+    public static File directory(World world, String identifier)
+    {
+        File directory = world.getSaveHandler().getWorldDirectory();
+        if (directory == null)
+            return null;
+
+        String saveFolder = world.provider.getSaveFolder();
+        if (saveFolder != null)
+            directory = new File(directory, saveFolder);
+
+        return new File(new File(directory, "data"), identifier);
+    }
+
+    public static int region(int chunkCoord)
+    {
+        return chunkCoord >> REGION_SHIFT;
+    }
+
+    public static long regionKey(int regionX, int regionZ)
+    {
+        return ChunkPos.asLong(regionX, regionZ);
+    }
+
+    public static int regionX(long key)
+    {
+        return (int) (key & 0xffffffffL);
+    }
+
+    public static int regionZ(long key)
+    {
+        return (int) (key >>> 32);
+    }
+
+    protected File file(long key)
+    {
+        return new File(directory, String.format("r.%d.%d.dat", regionX(key), regionZ(key)));
+    }
+
+    /**
+     * @return The keys of all regions that have a shard on disk.
+     */
+    @Nonnull
+    public List<Long> regions()
+    {
+        List<Long> regions = new ArrayList<>();
+
+        String[] files = directory.list();
+        if (files != null)
+        {
+            for (String name : files)
+            {
+                String[] parts = name.split("\\.");
+                if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("dat"))
+                    continue;
+
+                try
+                {
+                    regions.add(regionKey(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                }
+                catch (NumberFormatException ignored)
+                {
+                }
+            }
+        }
+
+        return regions;
+    }
+
+    @Nullable
+    public NBTTagCompound read(long key)
+    {
+        File file = file(key);
+        if (!file.exists())
+            return null;
+
+        try (FileInputStream stream = new FileInputStream(file))
+        {
+            return CompressedStreamTools.readCompressed(stream);
+        }
+        catch (IOException e)
+        {
+            RecurrentComplex.logger.error("Failed reading structure data shard " + file, e);
+            return null;
+        }
+    }
+
+    public void write(long key, @Nonnull NBTTagCompound compound)
+    {
+        File file = file(key);
+        File temp = new File(directory, file.getName() + ".tmp");
+
+        try
+        {
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Could not create directory " + directory);
+
+            try (FileOutputStream stream = new FileOutputStream(temp))
+            {
+                CompressedStreamTools.writeCompressed(compound, stream);
+            }
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            RecurrentComplex.logger.error("Failed writing structure data shard " + file, e);
+        }
+    }
+
+    public void delete(long key)
+    {
+        File file = file(key);
+        if (file.exists() && !file.delete())
+            RecurrentComplex.logger.warn("Failed deleting structure data shard " + file);
+    }
+}
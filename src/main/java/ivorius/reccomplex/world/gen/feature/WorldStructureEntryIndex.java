@@ -0,0 +1,288 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index of generation entries, keyed by packed (decoration-shifted) chunk coordinates.
+ * Each entry gets a dense int id; chunk buckets store bare id arrays and bounding boxes are kept as flat ints,
+ * so overlap checks are cheap. Matches are collected under the lock, and callbacks run after it is released.
+ */
+public class WorldStructureEntryIndex
+{
+    private static final int BOX_INTS = 6;
+
+    private WorldStructureGenerationData.Entry[] entries = new WorldStructureGenerationData.Entry[64];
+    private int[] boxes = new int[64 * BOX_INTS];
+    private int[] visited = new int[64];
+    private int visitStamp;
+
+    private int nextID;
+    private final IntArrayList freeIDs = new IntArrayList();
+    private final Object2IntOpenHashMap<UUID> ids = new Object2IntOpenHashMap<>();
+
+    // bucket[0] is the number of ids that follow
+    private final Long2ObjectOpenHashMap<int[]> chunks = new Long2ObjectOpenHashMap<>();
+
+    public WorldStructureEntryIndex()
+    {
+        ids.defaultReturnValue(-1);
+    }
+
+    public static long chunkKey(int x, int z)
+    {
+        return ChunkPos.asLong(x, z);
+    }
+
+    public static int decorationChunk(int blockCoord)
+    {
+        // Shifted by 8 since the chunk map is rasterized for decoration where every chunk is +8
+        return (blockCoord - 8) >> 4;
+    }
+
+    public synchronized int size()
+    {
+        return ids.size();
+    }
+
+    public synchronized void clear()
+    {
+        Arrays.fill(entries, null);
+        nextID = 0;
+        freeIDs.clear();
+        ids.clear();
+        chunks.clear();
+    }
+
+    public synchronized void add(@Nonnull WorldStructureGenerationData.Entry entry)
+    {
+        remove(entry.getUuid());
+
+        StructureBoundingBox bb = entry.getBoundingBox();
+        if (bb == null)
+            return;
+
+        int id = freeIDs.isEmpty() ? nextID++ : freeIDs.removeInt(freeIDs.size() - 1);
+        ensureCapacity(id + 1);
+
+        entries[id] = entry;
+        ids.put(entry.getUuid(), id);
+
+        int offset = id * BOX_INTS;
+        boxes[offset] = bb.minX;
+        boxes[offset + 1] = bb.minY;
+        boxes[offset + 2] = bb.minZ;
+        boxes[offset + 3] = bb.maxX;
+        boxes[offset + 4] = bb.maxY;
+        boxes[offset + 5] = bb.maxZ;
+
+        if (!valid(offset))
+            return;
+
+        for (int x = decorationChunk(bb.minX); x <= decorationChunk(bb.maxX); x++)
+            for (int z = decorationChunk(bb.minZ); z <= decorationChunk(bb.maxZ); z++)
+                addToBucket(chunkKey(x, z), id);
+    }
+
+    public synchronized boolean remove(@Nonnull UUID uuid)
+    {
+        int id = ids.removeInt(uuid);
+        if (id < 0)
+            return false;
+
+        int offset = id * BOX_INTS;
+        if (valid(offset))
+        {
+            for (int x = decorationChunk(boxes[offset]); x <= decorationChunk(boxes[offset + 3]); x++)
+                for (int z = decorationChunk(boxes[offset + 2]); z <= decorationChunk(boxes[offset + 5]); z++)
+                    removeFromBucket(chunkKey(x, z), id);
+        }
+
+        entries[id] = null;
+        freeIDs.add(id);
+        return true;
+    }
+
+    /**
+     * @return A snapshot of all entries rasterized into the (decoration-shifted) chunk.
+     */
+    @Nonnull
+    public synchronized List<WorldStructureGenerationData.Entry> entriesIn(int chunkX, int chunkZ)
+    {
+        int[] bucket = chunks.get(chunkKey(chunkX, chunkZ));
+        if (bucket == null)
+            return Collections.emptyList();
+
+        List<WorldStructureGenerationData.Entry> list = new ArrayList<>(bucket[0]);
+        for (int i = 1; i <= bucket[0]; i++)
+            list.add(entries[bucket[i]]);
+        return list;
+    }
+
+    public synchronized boolean hasEntriesIn(int chunkX, int chunkZ)
+    {
+        return chunks.containsKey(chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * @return Whether any entry whose bounding box contains the position matches the predicate.
+     * The predicate runs without holding the index lock, so it may query the index again.
+     */
+    public boolean anyAt(int x, int y, int z, @Nonnull Predicate<? super WorldStructureGenerationData.Entry> predicate)
+    {
+        List<WorldStructureGenerationData.Entry> candidates = new ArrayList<>();
+        collectAt(x, y, z, candidates);
+
+        for (WorldStructureGenerationData.Entry entry : candidates)
+        {
+            if (predicate.test(entry))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return Whether any entry intersecting the bounding box matches the predicate.
+     * The predicate runs without holding the index lock, so it may query the index again.
+     */
+    public boolean anyIntersecting(@Nonnull StructureBoundingBox bb, @Nonnull Predicate<? super WorldStructureGenerationData.Entry> predicate)
+    {
+        List<WorldStructureGenerationData.Entry> candidates = new ArrayList<>();
+        collectIntersecting(bb, candidates);
+
+        for (WorldStructureGenerationData.Entry entry : candidates)
+        {
+            if (predicate.test(entry))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * The consumer runs without holding the index lock, so it may query the index again.
+     */
+    public void forEachIntersecting(@Nonnull StructureBoundingBox bb, @Nonnull Consumer<? super WorldStructureGenerationData.Entry> consumer)
+    {
+        List<WorldStructureGenerationData.Entry> entries = new ArrayList<>();
+        collectIntersecting(bb, entries);
+        entries.forEach(consumer);
+    }
+
+    private synchronized void collectAt(int x, int y, int z, List<WorldStructureGenerationData.Entry> found)
+    {
+        int[] bucket = chunks.get(chunkKey(decorationChunk(x), decorationChunk(z)));
+        if (bucket == null)
+            return;
+
+        for (int i = 1; i <= bucket[0]; i++)
+        {
+            int id = bucket[i], offset = id * BOX_INTS;
+            if (x >= boxes[offset] && x <= boxes[offset + 3]
+                    && y >= boxes[offset + 1] && y <= boxes[offset + 4]
+                    && z >= boxes[offset + 2] && z <= boxes[offset + 5])
+                found.add(entries[id]);
+        }
+    }
+
+    private synchronized void collectIntersecting(StructureBoundingBox bb, List<WorldStructureGenerationData.Entry> found)
+    {
+        if (bb.minX > bb.maxX || bb.minY > bb.maxY || bb.minZ > bb.maxZ)
+            return;
+
+        // No foreign code runs while collecting, so the stamp can't be taken over by a nested visit
+        int stamp = nextVisitStamp();
+
+        for (int x = decorationChunk(bb.minX); x <= decorationChunk(bb.maxX); x++)
+            for (int z = decorationChunk(bb.minZ); z <= decorationChunk(bb.maxZ); z++)
+            {
+                int[] bucket = chunks.get(chunkKey(x, z));
+                if (bucket == null)
+                    continue;
+
+                for (int i = 1; i <= bucket[0]; i++)
+                {
+                    int id = bucket[i];
+                    if (visited[id] == stamp)
+                        continue;
+                    visited[id] = stamp;
+
+                    int offset = id * BOX_INTS;
+                    if (boxes[offset + 3] >= bb.minX && boxes[offset] <= bb.maxX
+                            && boxes[offset + 5] >= bb.minZ && boxes[offset + 2] <= bb.maxZ
+                            && boxes[offset + 4] >= bb.minY && boxes[offset + 1] <= bb.maxY)
+                        found.add(entries[id]);
+                }
+            }
+    }
+
+    private int nextVisitStamp()
+    {
+        if (++visitStamp == 0)
+        {
+            Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+        return visitStamp;
+    }
+
+    private boolean valid(int offset)
+    {
+        return boxes[offset] <= boxes[offset + 3] && boxes[offset + 1] <= boxes[offset + 4] && boxes[offset + 2] <= boxes[offset + 5];
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > entries.length)
+        {
+            int newLength = Math.max(capacity, entries.length * 2);
+            entries = Arrays.copyOf(entries, newLength);
+            boxes = Arrays.copyOf(boxes, newLength * BOX_INTS);
+            visited = Arrays.copyOf(visited, newLength);
+        }
+    }
+
+    private void addToBucket(long key, int id)
+    {
+        int[] bucket = chunks.get(key);
+        if (bucket == null)
+            chunks.put(key, bucket = new int[3]);
+        else if (bucket[0] + 1 >= bucket.length)
+            chunks.put(key, bucket = Arrays.copyOf(bucket, bucket.length * 2));
+
+        bucket[++bucket[0]] = id;
+    }
+
+    private void removeFromBucket(long key, int id)
+    {
+        int[] bucket = chunks.get(key);
+        if (bucket == null)
+            return;
+
+        for (int i = 1; i <= bucket[0]; i++)
+        {
+            if (bucket[i] == id)
+            {
+                bucket[i] = bucket[bucket[0]--];
+                break;
+            }
+        }
+
+        if (bucket[0] == 0)
+            chunks.remove(key);
+    }
+}
@@ -12,8 +12,9 @@ import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
 import ivorius.ivtoolkit.tools.NBTCompoundObject;
 import ivorius.ivtoolkit.tools.NBTCompoundObjects;
 import ivorius.ivtoolkit.tools.NBTTagLists;
-import ivorius.ivtoolkit.world.chunk.gen.StructureBoundingBoxes;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.utils.ByteArrays;
 import ivorius.reccomplex.utils.RCAxisAlignedTransform;
 import ivorius.reccomplex.utils.RCStructureBoundingBoxes;
 import ivorius.reccomplex.world.gen.feature.structure.Structure;
@@ -22,6 +23,7 @@ import ivorius.reccomplex.world.gen.feature.structure.Structures;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.BlockPos;
@@ -32,24 +34,55 @@ import net.minecraft.world.storage.WorldSavedData;
 import net.minecraftforge.common.util.Constants;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static ivorius.reccomplex.world.gen.feature.WorldStructureDataShards.region;
+import static ivorius.reccomplex.world.gen.feature.WorldStructureDataShards.regionKey;
+import static ivorius.reccomplex.world.gen.feature.WorldStructureDataShards.regionX;
+import static ivorius.reccomplex.world.gen.feature.WorldStructureDataShards.regionZ;
+import static ivorius.reccomplex.world.gen.feature.WorldStructureEntryIndex.decorationChunk;
+
 /**
  * Created by lukas on 01.03.15.
+ * <p>
+ * With {@link RCConfig#shardStructureGenerationData}, entries and checked chunks are stored per 32x32 chunk region
+ * (see {@link WorldStructureDataShards}). Regions are read when first touched and only changed regions are written.
+ * An entry is stored in the region of its minimum corner, and other regions it spans keep a reference that loads it;
+ * changes to stored entries go through {@link #changeEntry(Entry, Consumer)}. Structure counts are kept in the main
+ * file; other lookups that aren't spatial load all regions.
  */
 public class WorldStructureGenerationData extends WorldSavedData
 {
     private static final String IDENTIFIER = RecurrentComplex.MOD_ID + "-structuredata";
 
-    protected final LongSet checkedChunks = new LongOpenHashSet();
-    protected final LongSet checkedChunksFinal = new LongOpenHashSet();
+    protected final ChunkBitmap checkedChunks = new ChunkBitmap();
+    protected final ChunkBitmap checkedChunksFinal = new ChunkBitmap();
 
     protected final Map<UUID, Entry> entryMap = new HashMap<>();
-    protected final SetMultimap<ChunkPos, Entry> chunkMap = HashMultimap.create();
+    protected final WorldStructureEntryIndex chunkIndex = new WorldStructureEntryIndex();
 
     protected final SetMultimap<String, StructureEntry> instanceMap = HashMultimap.create();
+    // Counts all instances, loaded or not, and is readable while other threads add entries
+    protected final Map<String, AtomicInteger> instanceCounts = new ConcurrentHashMap<>();
+    // Whether instanceCounts covers entries that aren't loaded yet, so loading them mustn't count them again
+    protected volatile boolean instanceCountsComplete;
+
+    protected boolean bound;
+    protected boolean readLegacyFormat;
+
+    @Nullable
+    protected WorldStructureDataShards shards;
+    protected final LongSet loadedRegions = new LongOpenHashSet();
+    protected final LongSet dirtyRegions = new LongOpenHashSet();
+    protected boolean allRegionsLoaded;
 
     public WorldStructureGenerationData(String id)
     {
@@ -69,9 +102,57 @@ public class WorldStructureGenerationData extends WorldSavedData
             data = new WorldStructureGenerationData();
             world.getPerWorldStorage().setData(data.mapName, data);
         }
+        if (!data.bound)
+            data.bind(WorldStructureDataShards.directory(world, IDENTIFIER));
         return data;
     }
 
+    protected synchronized void bind(@Nullable File directory)
+    {
+        if (bound)
+            return;
+        bound = true;
+
+        if (directory == null)
+            return;
+
+        if (RCConfig.shardStructureGenerationData)
+        {
+            shards = new WorldStructureDataShards(directory);
+
+            if (readLegacyFormat)
+            {
+                // Migrate: everything is in memory already, so replace any stale shards with all regions on next save
+                shards.regions().forEach(shards::delete);
+                allRegionsLoaded = true;
+                instanceCountsComplete = true;
+
+                entryMap.values().forEach(entry -> markRegionsDirty(entry.getBoundingBox()));
+                // Both use the same region size and key
+                dirtyRegions.addAll(checkedChunks.regionKeys());
+                dirtyRegions.addAll(checkedChunksFinal.regionKeys());
+
+                markDirty();
+            }
+            else if (!instanceCountsComplete && shards.regions().isEmpty())
+            {
+                // Nothing that could be uncounted
+                instanceCountsComplete = true;
+            }
+        }
+        else
+        {
+            // Sharding was turned off: pull in all shards so they are saved in the main file again
+            WorldStructureDataShards previous = new WorldStructureDataShards(directory);
+            List<Long> regions = previous.regions();
+            if (!readLegacyFormat && !regions.isEmpty())
+            {
+                regions.forEach(key -> readShard(previous.read(key)));
+                markDirty();
+            }
+        }
+    }
+
     public Stream<StructureEntry> structureEntriesIn(ChunkPos coords)
     {
         return entriesAt(coords)
@@ -80,13 +161,15 @@ public class WorldStructureGenerationData extends WorldSavedData
 
     public Stream<Entry> entriesAt(ChunkPos coords)
     {
-        return chunkMap.get(coords).stream();
+        loadRegion(coords.x, coords.z);
+        return chunkIndex.entriesIn(coords.x, coords.z).stream();
     }
 
     public Stream<Entry> entriesAt(final BlockPos coords)
     {
-        // Add 8 for both since the chunk map is rasterized for decoration where every chunk is +8
-        return entriesAt(new ChunkPos((coords.getX() - 8) >> 4, (coords.getZ() - 8) >> 4))
+        int chunkX = decorationChunk(coords.getX()), chunkZ = decorationChunk(coords.getZ());
+        loadRegion(chunkX, chunkZ);
+        return chunkIndex.entriesIn(chunkX, chunkZ).stream()
                 .filter(input ->
                 {
                     StructureBoundingBox bb = input.getBoundingBox();
@@ -96,24 +179,40 @@ public class WorldStructureGenerationData extends WorldSavedData
 
     public Stream<Entry> entriesAt(final StructureBoundingBox boundingBox)
     {
-        return RCStructureBoundingBoxes.rasterize(boundingBox, true).stream().flatMap(chunkPos -> entriesAt(chunkPos).filter(input ->
-        {
-            StructureBoundingBox bb = input.getBoundingBox();
-            return bb != null && bb.intersectsWith(boundingBox);
-        }));
+        loadRegions(boundingBox);
+        List<Entry> entries = new ArrayList<>();
+        chunkIndex.forEachIntersecting(boundingBox, entries::add);
+        return entries.stream();
+    }
+
+    /**
+     * Cheaper alternative to {@link #entriesAt(StructureBoundingBox)}{@code .anyMatch(predicate)}.
+     */
+    public boolean hasEntryIntersecting(StructureBoundingBox boundingBox, Predicate<? super Entry> predicate)
+    {
+        loadRegions(boundingBox);
+        return chunkIndex.anyIntersecting(boundingBox, predicate);
     }
 
     public Set<ChunkPos> addEntry(Entry entry)
     {
-        entryMap.put(entry.getUuid(), entry);
+        // Regions must be complete before they are marked dirty, or saving would drop their other contents
+        loadRegions(entry.getBoundingBox());
+
+        Entry previous = entryMap.put(entry.getUuid(), entry);
+        if (previous != null)
+        {
+            loadRegions(previous.getBoundingBox());
+            markRegionsDirty(previous.getBoundingBox());
+        }
 
         Set<ChunkPos> rasterized = entry.rasterize();
-        for (ChunkPos coords : rasterized)
-            chunkMap.put(coords, entry);
+        chunkIndex.add(entry);
 
         if (entry instanceof StructureEntry)
-            instanceMap.put(((StructureEntry) entry).getStructureID(), (StructureEntry) entry);
+            putInstance((StructureEntry) entry);
 
+        markRegionsDirty(entry.getBoundingBox());
         markDirty();
 
         LongSet rasterizedSet = new LongOpenHashSet(rasterized.size());
@@ -123,38 +222,106 @@ public class WorldStructureGenerationData extends WorldSavedData
         for (LongIterator iterator = rasterizedSet.iterator(); iterator.hasNext(); )
         {
             long pos = iterator.nextLong();
-            if (checkedChunks.contains(pos))
+            loadRegion(chunkX(pos), chunkZ(pos));
+            if (checkedChunks.contains(chunkX(pos), chunkZ(pos)))
                 intersection.add(chunkPosFromLong(pos));
         }
 
         return Collections.unmodifiableSet(intersection);
     }
 
+    /**
+     * Changes an entry that was added before, so that the change is saved.
+     */
+    public <E extends Entry> void changeEntry(E entry, Consumer<? super E> change)
+    {
+        change.accept(entry);
+
+        StructureBoundingBox bb = entry.getBoundingBox();
+        if (shards != null && hasRegion(bb))
+        {
+            // The owner may only have been referenced so far; it must be complete before it is saved
+            long owner = ownerRegion(bb);
+            loadRegion(owner);
+            markRegionDirty(owner);
+        }
+        markDirty();
+    }
+
     public Entry getEntry(UUID id)
     {
-        return entryMap.get(id);
+        Entry entry = entryMap.get(id);
+        if (entry == null && loadAllRegions())
+            entry = entryMap.get(id);
+        return entry;
     }
 
     public Entry removeEntry(UUID id)
     {
-        Entry entry = entryMap.remove(id);
+        Entry entry = getEntry(id);
         if (entry == null)
             return null;
 
-        entry.rasterize().forEach(chunkPos -> chunkMap.remove(chunkPos, entry));
+        loadRegions(entry.getBoundingBox());
+
+        entryMap.remove(id);
+        chunkIndex.remove(id);
+        StructureInstanceDataCache.INSTANCE.invalidate(id);
 
         if (entry instanceof StructureEntry)
-            instanceMap.remove(((StructureEntry) entry).getStructureID(), (StructureEntry) entry);
+            removeInstance((StructureEntry) entry);
 
+        markRegionsDirty(entry.getBoundingBox());
         markDirty();
         return entry;
     }
 
+    /**
+     * With sharded storage, this loads all regions.
+     */
     public Set<StructureEntry> getEntriesByID(String id)
     {
+        loadAllRegions();
         return instanceMap.get(id);
     }
 
+    /**
+     * Cheaper than {@link #getEntriesByID(String)}{@code .size()}, and safe to call while entries are added.
+     * With sharded storage, the counts are saved in the main file, so no regions need to be loaded.
+     */
+    public int getStructureCount(String id)
+    {
+        // Sharded data saved without counts
+        if (shards != null && !instanceCountsComplete)
+            completeInstanceCounts();
+
+        AtomicInteger count = instanceCounts.get(id);
+        return count != null ? count.get() : 0;
+    }
+
+    protected synchronized void completeInstanceCounts()
+    {
+        loadAllRegions();
+        instanceCountsComplete = true;
+    }
+
+    protected void putInstance(StructureEntry entry)
+    {
+        if (instanceMap.put(entry.getStructureID(), entry))
+            countInstance(entry.getStructureID(), 1);
+    }
+
+    protected void removeInstance(StructureEntry entry)
+    {
+        if (instanceMap.remove(entry.getStructureID(), entry))
+            countInstance(entry.getStructureID(), -1);
+    }
+
+    protected void countInstance(String id, int delta)
+    {
+        instanceCounts.computeIfAbsent(id, key -> new AtomicInteger()).addAndGet(delta);
+    }
+
     public Stream<ChunkPos> checkAllChunks(Stream<ChunkPos> chunks)
     {
         return chunks.filter(this::checkChunk);
@@ -162,67 +329,284 @@ public class WorldStructureGenerationData extends WorldSavedData
 
     public boolean checkChunk(ChunkPos coords)
     {
-        boolean added = checkedChunks.add(ChunkPos.asLong(coords.x, coords.z));
+        loadRegion(coords.x, coords.z);
+        boolean added = checkedChunks.add(coords.x, coords.z);
         if (added)
+        {
+            markRegionDirty(coords);
             markDirty();
+        }
         return added;
     }
 
     public boolean isChunkChecked(ChunkPos coords)
     {
-        return checkedChunks.contains(ChunkPos.asLong(coords.x, coords.z));
+        loadRegion(coords.x, coords.z);
+        return checkedChunks.contains(coords.x, coords.z);
     }
 
     //
     public boolean checkChunkFinal(ChunkPos coords)
     {
-        boolean added = checkedChunksFinal.add(ChunkPos.asLong(coords.x, coords.z));
+        loadRegion(coords.x, coords.z);
+        boolean added = checkedChunksFinal.add(coords.x, coords.z);
         if (added)
+        {
+            markRegionDirty(coords);
             markDirty();
+        }
         return added;
     }
 
     public boolean isChunkCheckedFinal(ChunkPos coords)
     {
-        return checkedChunksFinal.contains(ChunkPos.asLong(coords.x, coords.z));
+        loadRegion(coords.x, coords.z);
+        return checkedChunksFinal.contains(coords.x, coords.z);
+    }
+
+    protected void loadRegion(int chunkX, int chunkZ)
+    {
+        loadRegion(regionKey(region(chunkX), region(chunkZ)));
+    }
+
+    protected synchronized void loadRegion(long key)
+    {
+        if (shards == null || allRegionsLoaded)
+            return;
+
+        if (loadedRegions.add(key))
+            readShard(shards.read(key));
+    }
+
+    protected void loadRegions(@Nullable StructureBoundingBox bb)
+    {
+        if (shards == null || allRegionsLoaded || bb == null)
+            return;
+
+        for (int x = region(decorationChunk(bb.minX)); x <= region(decorationChunk(bb.maxX)); x++)
+            for (int z = region(decorationChunk(bb.minZ)); z <= region(decorationChunk(bb.maxZ)); z++)
+                loadRegion(x << WorldStructureDataShards.REGION_SHIFT, z << WorldStructureDataShards.REGION_SHIFT);
+    }
+
+    /**
+     * @return Whether any regions had to be loaded.
+     */
+    protected synchronized boolean loadAllRegions()
+    {
+        if (shards == null || allRegionsLoaded)
+            return false;
+
+        for (long key : shards.regions())
+        {
+            if (loadedRegions.add(key))
+                readShard(shards.read(key));
+        }
+        allRegionsLoaded = true;
+        return true;
+    }
+
+    protected void markRegionDirty(ChunkPos coords)
+    {
+        markRegionDirty(regionKey(region(coords.x), region(coords.z)));
+    }
+
+    protected synchronized void markRegionDirty(long key)
+    {
+        if (shards != null)
+            dirtyRegions.add(key);
+    }
+
+    protected synchronized void markRegionsDirty(@Nullable StructureBoundingBox bb)
+    {
+        if (shards == null || bb == null)
+            return;
+
+        for (int x = region(decorationChunk(bb.minX)); x <= region(decorationChunk(bb.maxX)); x++)
+            for (int z = region(decorationChunk(bb.minZ)); z <= region(decorationChunk(bb.maxZ)); z++)
+                dirtyRegions.add(regionKey(x, z));
+    }
+
+    protected static boolean hasRegion(@Nullable StructureBoundingBox bb)
+    {
+        return bb != null && bb.minX <= bb.maxX && bb.minY <= bb.maxY && bb.minZ <= bb.maxZ;
+    }
+
+    /**
+     * @return The region that stores entries with this bounding box.
+     */
+    protected static long ownerRegion(StructureBoundingBox bb)
+    {
+        return regionKey(region(decorationChunk(bb.minX)), region(decorationChunk(bb.minZ)));
+    }
+
+    protected void readShard(@Nullable NBTTagCompound compound)
+    {
+        if (compound != null)
+        {
+            readEntries(compound);
+            readCheckedChunks(compound);
+            readEntryReferences(compound);
+        }
+    }
+
+    protected NBTTagCompound writeShard(long key)
+    {
+        int minChunkX = regionX(key) << WorldStructureDataShards.REGION_SHIFT;
+        int minChunkZ = regionZ(key) << WorldStructureDataShards.REGION_SHIFT;
+        int chunks = 1 << WorldStructureDataShards.REGION_SHIFT;
+
+        // The block area whose decoration chunks lie inside the region
+        List<Entry> entries = new ArrayList<>();
+        List<Entry> references = new ArrayList<>();
+        chunkIndex.forEachIntersecting(new StructureBoundingBox((minChunkX << 4) + 8, Integer.MIN_VALUE, (minChunkZ << 4) + 8,
+                ((minChunkX + chunks) << 4) + 7, Integer.MAX_VALUE, ((minChunkZ + chunks) << 4) + 7),
+                entry -> (ownerRegion(entry.getBoundingBox()) == key ? entries : references).add(entry));
+
+        int[] regionChecked = checkedChunks.write(regionX(key), regionZ(key));
+        int[] regionCheckedFinal = checkedChunksFinal.write(regionX(key), regionZ(key));
+
+        if (entries.isEmpty() && references.isEmpty() && regionChecked.length == 0 && regionCheckedFinal.length == 0)
+            return null;
+
+        NBTTagCompound compound = new NBTTagCompound();
+        writeEntries(compound, entries);
+        writeEntryReferences(compound, references);
+        writeCheckedChunks(compound, regionChecked, regionCheckedFinal);
+        return compound;
+    }
+
+    protected void readEntryReferences(NBTTagCompound compound)
+    {
+        for (NBTTagCompound reference : NBTTagLists.compoundsFrom(compound, "entryReferences"))
+        {
+            UUID uuid = new UUID(reference.getLong("UUIDMS"), reference.getLong("UUIDLS"));
+            if (!entryMap.containsKey(uuid))
+                loadRegion(reference.getLong("region"));
+        }
+    }
+
+    protected static void writeEntryReferences(NBTTagCompound compound, Collection<Entry> entries)
+    {
+        NBTTagLists.writeTo(compound, "entryReferences", entries.stream().map(entry ->
+        {
+            NBTTagCompound reference = new NBTTagCompound();
+            reference.setLong("UUIDMS", entry.getUuid().getMostSignificantBits());
+            reference.setLong("UUIDLS", entry.getUuid().getLeastSignificantBits());
+            reference.setLong("region", ownerRegion(entry.getBoundingBox()));
+            return reference;
+        }).collect(Collectors.toList()));
+    }
+
+    protected void readEntries(NBTTagCompound compound)
+    {
+        NBTCompoundObjects.readListFrom(compound, "entries", StructureEntry::new).forEach(this::putEntry);
+        NBTCompoundObjects.readListFrom(compound, "customEntries", CustomEntry::new).forEach(this::putEntry);
+    }
+
+    protected void putEntry(Entry entry)
+    {
+        // Older shards stored entries spanning several regions in each of them
+        if (entryMap.putIfAbsent(entry.getUuid(), entry) != null)
+            return;
+
+        chunkIndex.add(entry);
+        if (entry instanceof StructureEntry)
+        {
+            StructureEntry structureEntry = (StructureEntry) entry;
+            // Counted already if the counts were read
+            if (instanceCountsComplete)
+                instanceMap.put(structureEntry.getStructureID(), structureEntry);
+            else
+                putInstance(structureEntry);
+        }
+    }
+
+    protected void readCheckedChunks(NBTTagCompound compound)
+    {
+        checkedChunks.read(compound.getIntArray("checkedChunkRegions"));
+        checkedChunksFinal.read(compound.getIntArray("checkedChunkRegionsFinal"));
+
+        // Legacy
+        NBTTagLists.intArraysFrom(compound, "checkedChunks").forEach(ints -> checkedChunks.add(ints[0], ints[1]));
+        NBTTagLists.intArraysFrom(compound, "checkedChunksFinal").forEach(ints -> checkedChunksFinal.add(ints[0], ints[1]));
+    }
+
+    protected static void writeEntries(NBTTagCompound compound, Collection<Entry> entries)
+    {
+        NBTCompoundObjects.writeListTo(compound, "entries", entries.stream().filter(e -> e instanceof StructureEntry).collect(Collectors.toList()));
+        NBTCompoundObjects.writeListTo(compound, "customEntries", entries.stream().filter(e -> e instanceof CustomEntry).collect(Collectors.toList()));
+    }
+
+    protected void readInstanceCounts(NBTTagCompound compound)
+    {
+        for (String id : compound.getKeySet())
+            instanceCounts.put(id, new AtomicInteger(compound.getInteger(id)));
+    }
+
+    protected NBTTagCompound writeInstanceCounts()
+    {
+        NBTTagCompound compound = new NBTTagCompound();
+        instanceCounts.forEach((id, count) ->
+        {
+            if (count.get() > 0)
+                compound.setInteger(id, count.get());
+        });
+        return compound;
+    }
+
+    protected static void writeCheckedChunks(NBTTagCompound compound, int[] checkedChunks, int[] checkedChunksFinal)
+    {
+        compound.setIntArray("checkedChunkRegions", checkedChunks);
+        compound.setIntArray("checkedChunkRegionsFinal", checkedChunksFinal);
     }
 
     @Override
-    public void readFromNBT(NBTTagCompound compound)
+    public synchronized void readFromNBT(NBTTagCompound compound)
     {
         entryMap.clear();
-        chunkMap.clear();
+        chunkIndex.clear();
         instanceMap.clear();
-        NBTCompoundObjects.readListFrom(compound, "entries", StructureEntry::new).forEach(this::addEntry);
-        NBTCompoundObjects.readListFrom(compound, "customEntries", CustomEntry::new).forEach(this::addEntry);
-
+        instanceCounts.clear();
         checkedChunks.clear();
-        NBTTagLists.intArraysFrom(compound, "checkedChunks").forEach(ints -> checkedChunks.add(ChunkPos.asLong(ints[0], ints[1])));
         checkedChunksFinal.clear();
-        NBTTagLists.intArraysFrom(compound, "checkedChunksFinal").forEach(ints -> checkedChunksFinal.add(ChunkPos.asLong(ints[0], ints[1])));
+
+        // Before the entries, which are counted already then
+        instanceCountsComplete = compound.getBoolean("sharded") && compound.hasKey("structureCounts", Constants.NBT.TAG_COMPOUND);
+        if (instanceCountsComplete)
+            readInstanceCounts(compound.getCompoundTag("structureCounts"));
+
+        // When sharded, the main file only holds entries without a region (no valid bounding box)
+        readEntries(compound);
+        readCheckedChunks(compound);
+        readLegacyFormat = !compound.getBoolean("sharded");
     }
 
     @Override
-    public NBTTagCompound writeToNBT(NBTTagCompound compound)
+    public synchronized NBTTagCompound writeToNBT(NBTTagCompound compound)
     {
-        NBTCompoundObjects.writeListTo(compound, "entries", entryMap.values().stream().filter(e -> e instanceof StructureEntry).collect(Collectors.toList()));
-        NBTCompoundObjects.writeListTo(compound, "customEntries", entryMap.values().stream().filter(e -> e instanceof CustomEntry).collect(Collectors.toList()));
-
-        List<int[]> checkedChunksList = new ArrayList<>(checkedChunks.size());
-        for (LongIterator iterator = checkedChunks.iterator(); iterator.hasNext(); )
+        if (shards != null)
         {
-            long pos = iterator.nextLong();
-            checkedChunksList.add(new int[]{chunkX(pos), chunkZ(pos)});
-        }
-        NBTTagLists.writeIntArraysTo(compound, "checkedChunks", checkedChunksList);
+            for (LongIterator iterator = dirtyRegions.iterator(); iterator.hasNext(); )
+            {
+                long key = iterator.nextLong();
+                NBTTagCompound shard = writeShard(key);
 
-        List<int[]> checkedChunksFinalList = new ArrayList<>(checkedChunksFinal.size());
-        for (LongIterator iterator = checkedChunksFinal.iterator(); iterator.hasNext(); )
-        {
-            long pos = iterator.nextLong();
-            checkedChunksFinalList.add(new int[]{chunkX(pos), chunkZ(pos)});
+                if (shard != null)
+                    shards.write(key, shard);
+                else
+                    shards.delete(key);
+            }
+            dirtyRegions.clear();
+
+            compound.setBoolean("sharded", true);
+            if (instanceCountsComplete)
+                compound.setTag("structureCounts", writeInstanceCounts());
+            writeEntries(compound, entryMap.values().stream().filter(e -> !hasRegion(e.getBoundingBox())).collect(Collectors.toList()));
+            return compound;
         }
-        NBTTagLists.writeIntArraysTo(compound, "checkedChunksFinal", checkedChunksFinalList);
+
+        writeEntries(compound, entryMap.values());
+        writeCheckedChunks(compound, checkedChunks.write(), checkedChunksFinal.write());
 
         return compound;
     }
@@ -345,7 +729,8 @@ public class WorldStructureGenerationData extends WorldSavedData
 
         protected AxisAlignedTransform2D transform;
 
-        protected NBTBase instanceData;
+        // Serialized, since instance data is only needed while complementing
+        protected byte[] instanceData;
         protected boolean firstTime = true;
 
         protected boolean preventComplementation = false;
@@ -394,9 +779,51 @@ public class WorldStructureGenerationData extends WorldSavedData
             this.preventComplementation = preventComplementation;
         }
 
+        public boolean hasInstanceData()
+        {
+            return instanceData != null;
+        }
+
+        /**
+         * @return A freshly decoded copy of the instance data.
+         */
+        @Nullable
         public NBTBase getInstanceData()
         {
-            return instanceData;
+            if (instanceData == null)
+                return null;
+
+            try
+            {
+                return CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(instanceData))).getTag("data");
+            }
+            catch (IOException e)
+            {
+                RecurrentComplex.logger.error(String.format("Error reading instance data of %s (%s)", structureID, uuid), e);
+                return null;
+            }
+        }
+
+        public void setInstanceData(@Nullable NBTBase instanceData)
+        {
+            if (instanceData == null)
+            {
+                this.instanceData = null;
+                return;
+            }
+
+            NBTTagCompound compound = new NBTTagCompound();
+            compound.setTag("data", instanceData);
+
+            try
+            {
+                this.instanceData = ByteArrays.toByteArray(s -> CompressedStreamTools.write(compound, new DataOutputStream(s)));
+            }
+            catch (IOException e)
+            {
+                RecurrentComplex.logger.error(String.format("Error writing instance data of %s (%s)", structureID, uuid), e);
+                this.instanceData = null;
+            }
         }
 
         @Override
@@ -422,8 +849,10 @@ public class WorldStructureGenerationData extends WorldSavedData
                         : new StructureBoundingBox();
             }
 
-            if (compound.hasKey("instanceData", Constants.NBT.TAG_COMPOUND))
-                instanceData = compound.getCompoundTag("instanceData");
+            if (compound.hasKey("instanceDataBytes", Constants.NBT.TAG_BYTE_ARRAY))
+                instanceData = compound.getByteArray("instanceDataBytes");
+            else if (compound.hasKey("instanceData", Constants.NBT.TAG_COMPOUND)) // Legacy
+                setInstanceData(compound.getCompoundTag("instanceData"));
             firstTime = compound.getBoolean("firstTime");
             preventComplementation = compound.getBoolean("preventComplementation")
                     || compound.getBoolean("hasBeenGenerated"); // Legacy
@@ -442,7 +871,7 @@ public class WorldStructureGenerationData extends WorldSavedData
             RCAxisAlignedTransform.write(compound, transform, "rotation", "mirrorX");
 
             if (instanceData != null)
-                compound.setTag("instanceData", instanceData);
+                compound.setByteArray("instanceDataBytes", instanceData);
             compound.setBoolean("firstTime", firstTime);
             compound.setBoolean("preventComplementation", preventComplementation);
         }
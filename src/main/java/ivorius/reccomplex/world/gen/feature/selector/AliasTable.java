@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.selector;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Weighted random selection in constant time, using Vose's alias method.
+ * Like {@link ivorius.ivtoolkit.random.WeightedSelector}, every selection consumes exactly one {@link Random#nextDouble()}.
+ */
+public class AliasTable<T>
+{
+    private final List<T> items;
+    private final double[] probability;
+    private final int[] alias;
+    private final double totalWeight;
+
+    /**
+     * @param weights The weight of each item. Items with a weight of 0 or less are never selected.
+     */
+    public AliasTable(@Nonnull List<T> items, @Nonnull double[] weights)
+    {
+        if (items.size() != weights.length)
+            throw new IllegalArgumentException("Need one weight per item");
+
+        this.items = new ArrayList<>(items);
+
+        int n = weights.length;
+        probability = new double[n];
+        alias = new int[n];
+
+        double total = 0;
+        for (double weight : weights)
+            total += Math.max(0, weight);
+        totalWeight = total;
+
+        if (total <= 0)
+            return;
+
+        // Scale so the average is 1, then pair each underfull slot with an overfull one
+        double[] scaled = new double[n];
+        int[] small = new int[n], large = new int[n];
+        int smallSize = 0, largeSize = 0;
+        for (int i = 0; i < n; i++)
+        {
+            scaled[i] = Math.max(0, weights[i]) * n / total;
+            if (scaled[i] < 1)
+                small[smallSize++] = i;
+            else
+                large[largeSize++] = i;
+        }
+
+        while (smallSize > 0 && largeSize > 0)
+        {
+            int less = small[--smallSize], more = large[--largeSize];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1)
+                small[smallSize++] = more;
+            else
+                large[largeSize++] = more;
+        }
+
+        // Leftovers are full up to rounding errors
+        while (largeSize > 0)
+            probability[large[--largeSize]] = 1;
+        while (smallSize > 0)
+            probability[small[--smallSize]] = 1;
+    }
+
+    public int size()
+    {
+        return items.size();
+    }
+
+    public double totalWeight()
+    {
+        return totalWeight;
+    }
+
+    @Nullable
+    public T select(@Nonnull Random random)
+    {
+        if (totalWeight <= 0)
+            return null;
+
+        double value = random.nextDouble() * items.size();
+        int index = Math.min((int) value, items.size() - 1);
+        return items.get(value - index < probability[index] ? index : alias[index]);
+    }
+}
@@ -5,6 +5,7 @@
 
 package ivorius.reccomplex.world.gen.feature.selector;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.world.WorldProvider;
 import net.minecraft.world.biome.Biome;
@@ -23,9 +24,13 @@ public class CachedStructureSelectors<S extends StructureSelector>
 {
     private final ConcurrentMap<Pair<Integer, ResourceLocation>, S> structureSelectors = new ConcurrentHashMap<>();
 
+    // Copy on write, so reads don't need to lock. Only holds registered biomes.
+    private volatile Long2ObjectOpenHashMap<S> selectorsByID = new Long2ObjectOpenHashMap<>();
+
     private BiFunction<Biome, WorldProvider, S> selectorSupplier;
 
     private static final ResourceLocation NULL_BIOME_KEY = new ResourceLocation("reccomplex", "null_biome");
+    private static final int NULL_BIOME_ID = Integer.MIN_VALUE;
 
     public CachedStructureSelectors(BiFunction<Biome, WorldProvider, S> selectorSupplier)
     {
@@ -33,6 +38,41 @@ public class CachedStructureSelectors<S extends StructureSelector>
     }
 
     public S get(Biome biome, WorldProvider provider)
+    {
+        int biomeID = biome != null ? Biome.getIdForBiome(biome) : NULL_BIOME_ID;
+        if (biomeID < 0 && biomeID != NULL_BIOME_ID)
+            return getUnregistered(biome, provider);
+
+        long key = key(provider.getDimension(), biomeID);
+
+        S selector = selectorsByID.get(key);
+        if (selector != null && selector.isValid(biome, provider))
+            return selector;
+
+        synchronized (this)
+        {
+            Long2ObjectOpenHashMap<S> selectors = selectorsByID;
+
+            selector = selectors.get(key);
+            if (selector != null && selector.isValid(biome, provider))
+                return selector;
+
+            selector = selectorSupplier.apply(biome, provider);
+
+            selectors = new Long2ObjectOpenHashMap<>(selectors);
+            selectors.put(key, selector);
+            selectorsByID = selectors;
+
+            return selector;
+        }
+    }
+
+    private static long key(int dimension, int biomeID)
+    {
+        return ((long) dimension << 32) | (biomeID & 0xffffffffL);
+    }
+
+    private S getUnregistered(Biome biome, WorldProvider provider)
     {
         Pair<Integer, ResourceLocation> pair = new ImmutablePair<>(provider.getDimension(), resolveBiomeKey(biome));
         return structureSelectors.compute(pair, (key, existing) ->
@@ -64,6 +104,10 @@ public class CachedStructureSelectors<S extends StructureSelector>
 
     public void clear()
     {
+        synchronized (this)
+        {
+            selectorsByID = new Long2ObjectOpenHashMap<>();
+        }
         structureSelectors.clear();
     }
 }
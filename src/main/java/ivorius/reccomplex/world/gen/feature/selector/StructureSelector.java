@@ -7,6 +7,8 @@ package ivorius.reccomplex.world.gen.feature.selector;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import gnu.trove.list.TDoubleList;
+import gnu.trove.list.array.TDoubleArrayList;
 import gnu.trove.map.TObjectDoubleMap;
 import gnu.trove.map.hash.TObjectDoubleHashMap;
 import ivorius.ivtoolkit.random.WeightedSelector;
@@ -31,14 +33,20 @@ import java.util.*;
 public class StructureSelector<T extends GenerationType & EnvironmentalSelection<C>, C>
 {
     protected final Set<String> cachedDimensionTypes = new HashSet<>(); // Because dimensions could often change on the fly
+    protected final int cachedDimensionGeneration;
 
     protected Multimap<C, WeightedSelector.SimpleItem<Pair<Structure<?>, T>>> weightedStructureInfos = ArrayListMultimap.create();
     protected TObjectDoubleMap<C> totalWeights = new TObjectDoubleHashMap<>();
+    protected Map<C, AliasTable<Pair<Structure<?>, T>>> aliasTables = new HashMap<>();
 
     public StructureSelector(Map<String, Structure<?>> structures, WorldProvider provider, Biome biome, Class<T> typeClass)
     {
+        cachedDimensionGeneration = DimensionDictionary.generation();
         cachedDimensionTypes.addAll(DimensionDictionary.getDimensionTypes(provider));
 
+        Map<C, List<Pair<Structure<?>, T>>> items = new HashMap<>();
+        Map<C, TDoubleList> weights = new HashMap<>();
+
         for (Map.Entry<String, Structure<?>> entry : structures.entrySet())
         {
             float tweaked = RCConfig.tweakedSpawnRate(entry.getKey());
@@ -50,9 +58,15 @@ public class StructureSelector<T extends GenerationType & EnvironmentalSelection
                 {
                     weightedStructureInfos.put(selection.generationCategory(), new WeightedSelector.SimpleItem<>(generationWeight, Pair.of(entry.getValue(), selection)));
                     totalWeights.adjustOrPutValue(selection.generationCategory(), generationWeight, generationWeight);
+
+                    items.computeIfAbsent(selection.generationCategory(), c -> new ArrayList<>()).add(Pair.of(entry.getValue(), selection));
+                    weights.computeIfAbsent(selection.generationCategory(), c -> new TDoubleArrayList()).add(generationWeight);
                 }
             }
         }
+
+        for (C category : items.keySet())
+            aliasTables.put(category, new AliasTable<>(items.get(category), weights.get(category).toArray()));
     }
 
     public static double generationWeight(WorldProvider provider, Biome biome, PresettedList<WeightedBiomeMatcher> biomeWeights, PresettedList<WeightedDimensionMatcher> dimensionWeights)
@@ -97,11 +111,24 @@ public class StructureSelector<T extends GenerationType & EnvironmentalSelection
     @Nullable
     public Pair<Structure<?>, T> selectOne(Random random, @Nonnull C c, double totalWeight)
     {
-        return totalWeight > 0 ? WeightedSelector.select(random, weightedStructureInfos.get(c)) : null;
+        return totalWeight > 0 ? select(random, c) : null;
+    }
+
+    /**
+     * Selects a structure of the category, weighted, in constant time.
+     */
+    @Nullable
+    public Pair<Structure<?>, T> select(Random random, @Nonnull C c)
+    {
+        AliasTable<Pair<Structure<?>, T>> table = aliasTables.get(c);
+        return table != null ? table.select(random) : null;
     }
 
     public boolean isValid(Biome biome, WorldProvider provider)
     {
-        return DimensionDictionary.getDimensionTypes(provider).equals(cachedDimensionTypes);
+        if (provider instanceof DimensionDictionary.Handler)
+            return DimensionDictionary.getDimensionTypes(provider).equals(cachedDimensionTypes);
+
+        return cachedDimensionGeneration == DimensionDictionary.generation();
     }
 }
@@ -76,6 +76,23 @@ public class VariableDomain implements NBTCompoundObject
         return new VariableDomain(variables);
     }
 
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        VariableDomain that = (VariableDomain) o;
+
+        return variables.equals(that.variables);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return variables.hashCode();
+    }
+
     @Override
     public void readFromNBT(NBTTagCompound compound)
     {
@@ -8,10 +8,12 @@ package ivorius.reccomplex.world.gen.feature.structure.context;
 import ivorius.ivtoolkit.blocks.BlockAreas;
 import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
 import ivorius.ivtoolkit.world.chunk.gen.StructureBoundingBoxes;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.utils.RCAxisAlignedTransform;
 import ivorius.reccomplex.utils.RCBlockAreas;
 import ivorius.reccomplex.utils.RCStructureBoundingBoxes;
+import ivorius.reccomplex.world.gen.feature.DirectBlockWriter;
 import ivorius.reccomplex.world.gen.feature.HeightMapFreezer;
 import ivorius.reccomplex.world.gen.feature.structure.Environment;
 import net.minecraft.block.state.IBlockState;
@@ -27,8 +29,10 @@ import java.util.function.Predicate;
 
 /**
  * Created by lukas on 19.01.15.
+ * <p>
+ * Blocks may be written to chunks directly, so close the context once the structure is done generating.
  */
-public class StructureSpawnContext extends StructureLiveContext
+public class StructureSpawnContext extends StructureLiveContext implements AutoCloseable
 {
     @Nonnull
     public final Random random;
@@ -43,6 +47,7 @@ public class StructureSpawnContext extends StructureLiveContext
     public final GenerateMaturity generateMaturity;
 
     private HeightMapFreezer heightMapFreezer;
+    private DirectBlockWriter blockWriter;
 
     public StructureSpawnContext(@Nonnull Environment environment, @Nonnull Random random, @Nonnull AxisAlignedTransform2D transform, @Nonnull StructureBoundingBox boundingBox, @Nullable StructureBoundingBox generationBB, Predicate<Vec3i> generationPredicate, int generationLayer, boolean generateAsSource, GenerateMaturity generateMaturity)
     {
@@ -97,7 +102,9 @@ public class StructureSpawnContext extends StructureLiveContext
         if (includes(pos))
         {
             // world.setBlock returns false on 'no change'
-            environment.world.setBlockState(pos.toImmutable(), state, flag);
+            // Blocks without neighbor updates can go straight into unwatched chunks
+            if ((flag & 1) != 0 || !RCConfig.writeUnwatchedChunksDirectly || !blockWriter().setBlockState(pos, state))
+                environment.world.setBlockState(pos.toImmutable(), state, flag);
             if (heightMapFreezer != null) heightMapFreezer.markBlock(pos, state);
             return true;
         }
@@ -105,6 +112,21 @@ public class StructureSpawnContext extends StructureLiveContext
         return false;
     }
 
+    protected DirectBlockWriter blockWriter()
+    {
+        return blockWriter != null ? blockWriter : (blockWriter = new DirectBlockWriter(environment.world));
+    }
+
+    /**
+     * Relights the chunks that blocks were set in directly.
+     */
+    @Override
+    public void close()
+    {
+        if (blockWriter != null)
+            blockWriter.flush();
+    }
+
     public void freezeHeightMap(StructureBoundingBox boundingBox)
     {
         heightMapFreezer = HeightMapFreezer.freeze(boundingBox, environment.world);
@@ -0,0 +1,225 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import ivorius.ivtoolkit.blocks.IvBlockCollection;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.ivtoolkit.tools.IvWorldData;
+import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.temp.RCMover;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable, decoded snapshot of a structure's world data NBT.
+ * Block states are stored as a palette plus packed indices, tile entities are indexed by source position.
+ * Instances are shared between threads and generation calls - callers must not modify {@link #worldData}.
+ */
+public class DecodedWorldData
+{
+    @Nullable
+    public final NBTTagCompound source;
+
+    /**
+     * Shared, read-only world data for transformers that operate on {@link IvWorldData}.
+     */
+    @Nonnull
+    public final IvWorldData worldData;
+
+    public final int width;
+    public final int height;
+    public final int length;
+
+    protected final IBlockState[] palette;
+    protected final char[] states;
+
+    protected final TIntObjectMap<NBTTagCompound> tileEntities;
+    protected final long[] tileEntityMask;
+    protected final List<NBTTagCompound> entities;
+
+    protected final AtomicReferenceArray<StructurePlacementPlan> placementPlans = new AtomicReferenceArray<>(8);
+
+    protected DecodedWorldData(@Nullable NBTTagCompound source, @Nonnull IvWorldData worldData, IBlockState[] palette, char[] states, TIntObjectMap<NBTTagCompound> tileEntities, long[] tileEntityMask)
+    {
+        this.source = source;
+        this.worldData = worldData;
+
+        IvBlockCollection blockCollection = worldData.blockCollection;
+        this.width = blockCollection.width;
+        this.height = blockCollection.height;
+        this.length = blockCollection.length;
+
+        this.palette = palette;
+        this.states = states;
+        this.tileEntities = tileEntities;
+        this.tileEntityMask = tileEntityMask;
+        this.entities = Collections.unmodifiableList(new ArrayList<>(worldData.entities));
+    }
+
+    @Nonnull
+    public static DecodedWorldData decode(@Nullable NBTTagCompound source)
+    {
+        IvWorldData worldData = new IvWorldData(source != null ? source : new NBTTagCompound(), RecurrentComplex.specialRegistry.itemHidingMode());
+        IvBlockCollection blockCollection = worldData.blockCollection;
+
+        int width = blockCollection.width, height = blockCollection.height, length = blockCollection.length;
+        char[] states = new char[width * height * length];
+        List<IBlockState> palette = new ArrayList<>();
+        TObjectIntHashMap<IBlockState> paletteIndices = new TObjectIntHashMap<>(16, 0.5f, -1);
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int index = 0;
+        for (int z = 0; z < length; z++)
+            for (int y = 0; y < height; y++)
+                for (int x = 0; x < width; x++)
+                {
+                    IBlockState state = blockCollection.getBlockState(pos.setPos(x, y, z));
+
+                    int paletteIndex = paletteIndices.get(state);
+                    if (paletteIndex < 0)
+                    {
+                        paletteIndices.put(state, paletteIndex = palette.size());
+                        palette.add(state);
+                    }
+
+                    states[index++] = (char) paletteIndex;
+                }
+
+        TIntObjectMap<NBTTagCompound> tileEntities = new TIntObjectHashMap<>(Math.max(worldData.tileEntities.size(), 1));
+        long[] tileEntityMask = new long[(states.length + 63) >> 6];
+        for (NBTTagCompound tileEntityCompound : worldData.tileEntities)
+        {
+            BlockPos src = RCMover.getTileEntityPos(tileEntityCompound);
+            if (src.getX() >= 0 && src.getY() >= 0 && src.getZ() >= 0 && src.getX() < width && src.getY() < height && src.getZ() < length)
+            {
+                int tileEntityIndex = (src.getZ() * height + src.getY()) * width + src.getX();
+                tileEntities.put(tileEntityIndex, tileEntityCompound);
+                tileEntityMask[tileEntityIndex >> 6] |= 1L << tileEntityIndex;
+            }
+        }
+
+        return new DecodedWorldData(source, worldData, palette.toArray(new IBlockState[0]), states, tileEntities, tileEntityMask);
+    }
+
+    public int[] size()
+    {
+        return new int[]{width, height, length};
+    }
+
+    public int volume()
+    {
+        return states.length;
+    }
+
+    public int index(int x, int y, int z)
+    {
+        return (z * height + y) * width + x;
+    }
+
+    public int index(BlockPos pos)
+    {
+        return index(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public int paletteSize()
+    {
+        return palette.length;
+    }
+
+    @Nonnull
+    public IBlockState paletteState(int paletteIndex)
+    {
+        return palette[paletteIndex];
+    }
+
+    public int paletteIndex(int index)
+    {
+        return states[index];
+    }
+
+    @Nonnull
+    public IBlockState getBlockState(int index)
+    {
+        return palette[states[index]];
+    }
+
+    @Nonnull
+    public IBlockState getBlockState(BlockPos pos)
+    {
+        return getBlockState(index(pos));
+    }
+
+    public boolean hasTileEntity(int index)
+    {
+        return (tileEntityMask[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return The source tile entity compound at the index; callers must copy before modifying.
+     */
+    @Nullable
+    public NBTTagCompound tileEntity(int index)
+    {
+        return hasTileEntity(index) ? tileEntities.get(index) : null;
+    }
+
+    @Nullable
+    public NBTTagCompound tileEntity(BlockPos pos)
+    {
+        return tileEntity(index(pos));
+    }
+
+    @Nonnull
+    public List<NBTTagCompound> entities()
+    {
+        return entities;
+    }
+
+    /**
+     * @return The placement plan for the transform, compiled on first request.
+     */
+    @Nonnull
+    public StructurePlacementPlan placementPlan(@Nonnull AxisAlignedTransform2D transform)
+    {
+        int slot = StructurePlacementPlan.slot(transform);
+        StructurePlacementPlan plan = placementPlans.get(slot);
+
+        if (plan == null)
+        {
+            plan = StructurePlacementPlan.compile(this, transform);
+            if (!placementPlans.compareAndSet(slot, null, plan))
+                plan = placementPlans.get(slot);
+        }
+
+        return plan;
+    }
+
+    /**
+     * @return The approximate memory weight, in units of decoded blocks, including compiled placement plans.
+     */
+    public long weight()
+    {
+        long weight = states.length + tileEntityMask.length * 4L;
+        for (int i = 0; i < placementPlans.length(); i++)
+        {
+            StructurePlacementPlan plan = placementPlans.get(i);
+            if (plan != null)
+                weight += plan.weight();
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.files.SimpleLeveledRegistry;
+import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
+import net.minecraft.nbt.NBTTagCompound;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU of decoded structure world data, weighted by block count (including compiled placement plans).
+ * Entries are validated against the world data compound they were decoded from, so reassigning
+ * {@link GenericStructure#worldDataCompound} implicitly invalidates them.
+ */
+public class DecodedWorldDataCache
+{
+    public static final DecodedWorldDataCache INSTANCE = new DecodedWorldDataCache();
+
+    private final LinkedHashMap<GenericStructure, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBlocks;
+
+    @Nonnull
+    public DecodedWorldData get(@Nonnull GenericStructure structure, @Nullable NBTTagCompound source)
+    {
+        synchronized (entries)
+        {
+            Entry cached = entries.get(structure);
+            if (cached != null && cached.data.source == source)
+            {
+                reweigh(cached);
+                return cached.data;
+            }
+        }
+
+        // Decode outside the lock; racing threads may decode twice, but never block each other
+        DecodedWorldData decoded = DecodedWorldData.decode(source);
+
+        synchronized (entries)
+        {
+            Entry cached = entries.get(structure);
+            if (cached != null && cached.data.source == source)
+                return cached.data;
+
+            if (cached != null)
+                remove(structure);
+
+            if (decoded.weight() <= RCConfig.decodedStructureCacheBlocks)
+            {
+                Entry entry = new Entry(decoded);
+                entries.put(structure, entry);
+                cachedBlocks += entry.weight;
+                trim(RCConfig.decodedStructureCacheBlocks);
+            }
+        }
+
+        return decoded;
+    }
+
+    public void invalidate(@Nonnull GenericStructure structure)
+    {
+        synchronized (entries)
+        {
+            remove(structure);
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            cachedBlocks = 0;
+        }
+    }
+
+    public long cachedBlocks()
+    {
+        synchronized (entries)
+        {
+            return cachedBlocks;
+        }
+    }
+
+    private void remove(GenericStructure structure)
+    {
+        Entry removed = entries.remove(structure);
+        if (removed != null)
+            cachedBlocks -= removed.weight;
+    }
+
+    private void reweigh(Entry entry)
+    {
+        // Placement plans are compiled lazily, so entries grow after insertion
+        long weight = entry.data.weight();
+        if (weight != entry.weight)
+        {
+            cachedBlocks += weight - entry.weight;
+            entry.weight = weight;
+            trim(RCConfig.decodedStructureCacheBlocks);
+        }
+    }
+
+    private void trim(long maxBlocks)
+    {
+        Iterator<Map.Entry<GenericStructure, Entry>> iterator = entries.entrySet().iterator();
+        while (cachedBlocks > maxBlocks && iterator.hasNext())
+        {
+            cachedBlocks -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    private static class Entry
+    {
+        public final DecodedWorldData data;
+        public long weight;
+
+        public Entry(DecodedWorldData data)
+        {
+            this.data = data;
+            this.weight = data.weight();
+        }
+    }
+
+    public static class Module extends SimpleLeveledRegistry.Module<StructureRegistry>
+    {
+        @Override
+        public void invalidate()
+        {
+            INSTANCE.clear();
+        }
+    }
+}
@@ -8,7 +8,6 @@ package ivorius.reccomplex.world.gen.feature.structure.generic;
 import com.google.gson.*;
 import ivorius.ivtoolkit.blocks.BlockAreas;
 import ivorius.ivtoolkit.blocks.IvBlockCollection;
-import ivorius.ivtoolkit.blocks.IvMutableBlockPos;
 import ivorius.ivtoolkit.tools.IvWorldData;
 import ivorius.ivtoolkit.tools.NBTCompoundObjects;
 import ivorius.ivtoolkit.transform.Mover;
@@ -21,7 +20,6 @@ import ivorius.reccomplex.nbt.NBTStorable;
 import ivorius.reccomplex.temp.RCMover;
 import ivorius.reccomplex.temp.RCPosTransformer;
 import ivorius.reccomplex.utils.ItemHandlers;
-import ivorius.reccomplex.utils.RCStructureBoundingBoxes;
 import ivorius.reccomplex.utils.accessor.RCAccessorEntity;
 import ivorius.reccomplex.utils.accessor.RCAccessorWorldServer;
 import ivorius.reccomplex.utils.expression.DependencyExpression;
@@ -39,6 +37,7 @@ import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.RunTr
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.Transformer;
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.TransformerGenerationBehavior;
 import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.TransformerMulti;
+import ivorius.reccomplex.world.gen.feature.structure.generic.transformers.TransformerPipeline;
 import ivorius.reccomplex.world.gen.feature.RCWorldgenMonitor;
 import ivorius.reccomplex.world.storage.loot.LootGenerationHandler;
 import net.minecraft.block.material.Material;
@@ -48,16 +47,13 @@ import net.minecraft.entity.EntityList;
 import net.minecraft.init.Blocks;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Vec3i;
 import net.minecraft.util.text.TextComponentBase;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
-import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.common.registry.ForgeRegistries;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -88,7 +84,8 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
     public NBTTagCompound worldDataCompound;
     protected transient Path sanitizedWorldDataPath;
     protected transient String sanitizedWorldDataHash;
-    protected transient boolean sanitizedWorldDataResolved;
+    // Written after worldDataCompound, so readers that see it set see the resolved compound
+    protected transient volatile boolean sanitizedWorldDataResolved;
 
     public boolean rotatable;
     public boolean mirrorable;
@@ -113,31 +110,35 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
         return genericStructureInfo;
     }
 
-    private static double[] getEntityPos(NBTTagCompound compound)
+    public static void setBlock(@Nonnull StructureSpawnContext context, int[] areaSize, @Nonnull BlockPos worldPos, @Nonnull IBlockState state, @Nonnull Supplier<NBTTagCompound> tileEntity)
     {
-        NBTTagList pos = compound.getTagList("Pos", Constants.NBT.TAG_DOUBLE);
-        return new double[]{pos.getDoubleAt(0), pos.getDoubleAt(1), pos.getDoubleAt(2)};
+        if (context.setBlock(worldPos, state, 2))
+            setTileEntity(context, areaSize, worldPos, state, tileEntity.get());
     }
 
-    public static void setBlock(@Nonnull StructureSpawnContext context, int[] areaSize, @Nonnull BlockPos worldPos, @Nonnull IBlockState state, @Nonnull Supplier<NBTTagCompound> tileEntity)
+    public static void setBlock(@Nonnull StructureSpawnContext context, int[] areaSize, @Nonnull BlockPos worldPos, @Nonnull IBlockState state, @Nullable NBTTagCompound tileEntity)
+    {
+        if (context.setBlock(worldPos, state, 2))
+            setTileEntity(context, areaSize, worldPos, state, tileEntity);
+    }
+
+    private static void setTileEntity(@Nonnull StructureSpawnContext context, int[] areaSize, @Nonnull BlockPos worldPos, @Nonnull IBlockState state, @Nullable NBTTagCompound tileEntityCompound)
     {
         WorldServer world = context.environment.world;
-        if (context.setBlock(worldPos, state, 2)) {
-            NBTTagCompound tileEntityCompound = tileEntity.get(); // Wants to set
 
-            if (tileEntityCompound != null && world.getBlockState(worldPos).getBlock() == state.getBlock()) {
-                TileEntity worldTileEntity = world.getTileEntity(worldPos);
+        // Wants to set
+        if (tileEntityCompound != null && world.getBlockState(worldPos).getBlock() == state.getBlock()) {
+            TileEntity worldTileEntity = world.getTileEntity(worldPos);
 
-                if (worldTileEntity != null) // Do set
-                {
-                    tileEntityCompound = RCMover.setTileEntityPos(tileEntityCompound, worldPos);
-                    worldTileEntity.readFromNBT(tileEntityCompound);
+            if (worldTileEntity != null) // Do set
+            {
+                tileEntityCompound = RCMover.setTileEntityPos(tileEntityCompound, worldPos);
+                worldTileEntity.readFromNBT(tileEntityCompound);
 
-                    RCPosTransformer.transformAdditionalData(worldTileEntity, context.transform, areaSize);
-                    RCMover.setAdditionalDataPos(worldTileEntity, worldPos);
+                RCPosTransformer.transformAdditionalData(worldTileEntity, context.transform, areaSize);
+                RCMover.setAdditionalDataPos(worldTileEntity, worldPos);
 
-                    generateTileEntityContents(context, worldTileEntity);
-                }
+                generateTileEntityContents(context, worldTileEntity);
             }
         }
     }
@@ -183,7 +184,8 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
     public void generate(@Nonnull final StructureSpawnContext context, @Nonnull InstanceData instanceData, @Nonnull TransformerMulti foreignTransformer)
     {
         WorldServer world = context.environment.world;
-        IvWorldData worldData = constructWorldData();
+        DecodedWorldData decoded = decodedWorldData();
+        IvWorldData worldData = decoded.worldData;
         boolean asSource = context.generateAsSource;
 
         RunTransformer transformer = getRunTransformer(instanceData, foreignTransformer, asSource);
@@ -195,17 +197,15 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
         RCAccessorWorldServer.ensureBlockEventArray(world); // Hax
 
         IvBlockCollection blockCollection = worldData.blockCollection;
-        int[] areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
+        int[] areaSize = decoded.size();
         BlockPos origin = StructureBoundingBoxes.min(context.boundingBox);
+        StructurePlacementPlan plan = decoded.placementPlan(context.transform);
+        StructureBoundingBox destArea = context.generationBB;
 
-        Map<BlockPos, NBTTagCompound> tileEntityCompounds = new HashMap<>();
-        for (NBTTagCompound tileEntityCompound : worldData.tileEntities) {
-            BlockPos src = RCMover.getTileEntityPos(tileEntityCompound);
-            tileEntityCompounds.put(src, tileEntityCompound);
-        }
+        TransformerPipeline pipeline = transformer != null ? transformer.pipeline(context, worldData) : null;
 
-        if (transformer != null)
-            transformer.transformer.transform(transformer.instanceData, Transformer.Phase.BEFORE, context, worldData, transformer);
+        if (pipeline != null)
+            pipeline.transform(Transformer.Phase.BEFORE);
 
         StructureBoundingBox relevantSourceArea = context.sourceIntersection(BlockAreas.toBoundingBox(blockCollection.area()));
 
@@ -213,16 +213,38 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
         {
             context.freezeHeightMap(relevantSourceArea);
 
+            // Relative destination area; the plan visits only the columns inside of it
+            int minX = destArea != null ? Math.max(0, destArea.minX - origin.getX()) : 0;
+            int minY = destArea != null ? Math.max(0, destArea.minY - origin.getY()) : 0;
+            int minZ = destArea != null ? Math.max(0, destArea.minZ - origin.getZ()) : 0;
+            int maxX = destArea != null ? Math.min(plan.width - 1, destArea.maxX - origin.getX()) : plan.width - 1;
+            int maxY = destArea != null ? Math.min(plan.height - 1, destArea.maxY - origin.getY()) : plan.height - 1;
+            int maxZ = destArea != null ? Math.min(plan.length - 1, destArea.maxZ - origin.getZ()) : plan.length - 1;
+
+            BlockPos.MutableBlockPos sourcePos = new BlockPos.MutableBlockPos();
             BlockPos.MutableBlockPos worldPos = new BlockPos.MutableBlockPos();
-            for (int pass = 0; pass < 2; pass++) {
-                for (BlockPos sourcePos : RCStructureBoundingBoxes.mutablePositions(relevantSourceArea)) {
-                    IvMutableBlockPos.add(context.transform.applyOn(sourcePos, worldPos, areaSize), origin);
+            for (int pass = 0; pass < StructurePlacementPlan.PASSES; pass++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        int bucket = plan.bucket(pass, x, z);
+
+                        for (int entry = plan.bucketStart(bucket, minY), end = plan.bucketEnd(bucket); entry < end; entry++) {
+                            int sourceIndex = plan.sourceIndex(entry);
+                            int y = plan.sourceY(sourceIndex);
+
+                            if (y > maxY)
+                                break; // Buckets are sorted by y
+
+                            worldPos.setPos(origin.getX() + x, origin.getY() + y, origin.getZ() + z);
 
-                    if (context.includesComplex(worldPos)) {
-                        IBlockState state = PosTransformer.transformBlockState(blockCollection.getBlockState(sourcePos), context.transform);
+                            if (context.includesComplex(worldPos)) {
+                                IBlockState state = plan.state(sourceIndex);
+                                plan.sourcePos(sourceIndex, sourcePos);
 
-                        if (pass == getPass(state) && (transformer == null || !transformer.transformer.skipGeneration(transformer.instanceData, context, worldPos, state, worldData, sourcePos))) {
-                            setBlock(context, areaSize, worldPos, state, () -> tileEntityCompounds.get(sourcePos));
+                                if (pipeline == null || !pipeline.skipGeneration(worldPos, state, sourcePos)) {
+                                    setBlock(context, areaSize, worldPos, state, decoded.tileEntity(sourceIndex));
+                                }
+                            }
                         }
                     }
                 }
@@ -231,15 +253,19 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
             context.meltHeightMap();
         }
 
-        if (transformer != null)
-            transformer.transformer.transform(transformer.instanceData, Transformer.Phase.AFTER, context, worldData, transformer);
+        if (pipeline != null)
+            pipeline.transform(Transformer.Phase.AFTER);
 
         Map<ResourceLocation, Integer> skippedEntities = new HashMap<>();
         Map<String, Integer> invalidEntityIds = new HashMap<>();
 
-        for (NBTTagCompound entityCompound : worldData.entities) {
-            double[] transformedEntityPos = context.transform.applyOn(getEntityPos(entityCompound), areaSize);
-            if (context.includes(new Vec3i(transformedEntityPos[0] + origin.getX(), transformedEntityPos[1] + origin.getY(), transformedEntityPos[2] + origin.getZ()))) {
+        List<NBTTagCompound> entities = decoded.entities();
+        BlockPos.MutableBlockPos entityPos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < entities.size(); i++) {
+            NBTTagCompound entityCompound = entities.get(i);
+            entityPos.setPos(plan.entityPosition(i, 0) + origin.getX(), plan.entityPosition(i, 1) + origin.getY(), plan.entityPosition(i, 2) + origin.getZ());
+
+            if (context.includes(entityPos)) {
                 String entityIdString = entityCompound.getString("id");
 
                 ResourceLocation entityId;
@@ -386,7 +412,7 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
         InstanceData instanceData = new InstanceData();
 
         if (!context.generateAsSource) {
-            IvWorldData worldData = constructWorldData();
+            IvWorldData worldData = decodedWorldData().worldData;
 
             context.environment.variables.fill(instanceData.variableDomain); // Fill with already set vars
             variableDomain.fill(instanceData.variableDomain, context.environment, context.random); // Determine the rest
@@ -431,18 +457,32 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
     public InstanceData loadInstanceData(@Nonnull StructureLoadContext context, @Nonnull final NBTBase nbt, @Nonnull TransformerMulti transformer)
     {
         InstanceData instanceData = new InstanceData();
-        instanceData.readFromNBT(context, nbt, this.transformer, transformer, constructWorldData());
+        instanceData.readFromNBT(context, nbt, this.transformer, transformer, decodedWorldData().worldData);
         return instanceData;
     }
 
+    /**
+     * @return A fresh, modifiable copy of the world data. Use {@link #decodedWorldData()} for read-only access.
+     */
     public IvWorldData constructWorldData()
     {
         NBTTagCompound data = resolvedWorldDataCompound();
         return new IvWorldData(data != null ? data : new NBTTagCompound(), RecurrentComplex.specialRegistry.itemHidingMode());
     }
 
-    void applySanitizedWorldData(@Nullable NBTTagCompound sanitizedWorldData, @Nullable Path cachePath, @Nullable String sourceHash)
+    /**
+     * @return The shared, cached decoded world data. Must not be modified.
+     */
+    @Nonnull
+    public DecodedWorldData decodedWorldData()
+    {
+        return DecodedWorldDataCache.INSTANCE.get(this, resolvedWorldDataCompound());
+    }
+
+    synchronized void applySanitizedWorldData(@Nullable NBTTagCompound sanitizedWorldData, @Nullable Path cachePath, @Nullable String sourceHash)
     {
+        DecodedWorldDataCache.INSTANCE.invalidate(this);
+
         if (sanitizedWorldData != null)
             worldDataCompound = sanitizedWorldData;
 
@@ -451,22 +491,32 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
         sanitizedWorldDataResolved = sanitizedWorldData != null || cachePath == null;
     }
 
+    /**
+     * May be called from the prefetch threads as well.
+     */
     private NBTTagCompound resolvedWorldDataCompound()
     {
         if (!sanitizedWorldDataResolved)
         {
-            sanitizedWorldDataResolved = true;
-            if (sanitizedWorldDataPath != null && sanitizedWorldDataHash != null)
+            synchronized (this)
             {
-                try
+                if (!sanitizedWorldDataResolved)
                 {
-                    NBTTagCompound cached = StructureWorldDataSanitizer.readCache(sanitizedWorldDataPath, sanitizedWorldDataHash);
-                    if (cached != null)
-                        worldDataCompound = cached;
-                }
-                catch (IOException e)
-                {
-                    RecurrentComplex.logger.warn("Failed to read sanitized structure cache {}", sanitizedWorldDataPath, e);
+                    if (sanitizedWorldDataPath != null && sanitizedWorldDataHash != null)
+                    {
+                        try
+                        {
+                            NBTTagCompound cached = StructureWorldDataSanitizer.readCache(sanitizedWorldDataPath, sanitizedWorldDataHash);
+                            if (cached != null)
+                                worldDataCompound = cached;
+                        }
+                        catch (IOException e)
+                        {
+                            RecurrentComplex.logger.warn("Failed to read sanitized structure cache {}", sanitizedWorldDataPath, e);
+                        }
+                    }
+
+                    sanitizedWorldDataResolved = true;
                 }
             }
         }
@@ -493,7 +543,7 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
         return null;
     }
 
-    private int getPass(IBlockState state)
+    static int getPass(IBlockState state)
     {
         return (state.isNormalCube() || state.getMaterial() == Material.AIR) ? 0 : 1;
     }
@@ -515,7 +565,7 @@ public class GenericStructure implements Structure<GenericStructure.InstanceData
     @Override
     public IvBlockCollection blockCollection()
     {
-        return constructWorldData().blockCollection;
+        return decodedWorldData().worldData.blockCollection;
     }
 
     @Nonnull
@@ -0,0 +1,194 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic;
+
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.ivtoolkit.transform.PosTransformer;
+import ivorius.reccomplex.utils.RCAxisAlignedTransform;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A compiled placement plan of decoded world data for one transform.
+ * Palette states are pre-transformed, and source blocks are bucketed by pass and destination column (sorted by y),
+ * so placing a sub-area only visits the blocks inside of it. Entity positions are pre-transformed as well.
+ * <p>
+ * Air is kept in the buckets since generating it carves out terrain.
+ */
+public class StructurePlacementPlan
+{
+    public static final int PASSES = 2;
+
+    @Nonnull
+    public final DecodedWorldData data;
+    @Nonnull
+    public final AxisAlignedTransform2D transform;
+
+    public final int width;
+    public final int height;
+    public final int length;
+
+    protected final IBlockState[] palette;
+
+    protected final int[] bucketStarts;
+    protected final int[] sourceIndices;
+
+    protected final double[] entityPositions;
+
+    protected StructurePlacementPlan(@Nonnull DecodedWorldData data, @Nonnull AxisAlignedTransform2D transform, int[] size, IBlockState[] palette, int[] bucketStarts, int[] sourceIndices, double[] entityPositions)
+    {
+        this.data = data;
+        this.transform = transform;
+        this.width = size[0];
+        this.height = size[1];
+        this.length = size[2];
+        this.palette = palette;
+        this.bucketStarts = bucketStarts;
+        this.sourceIndices = sourceIndices;
+        this.entityPositions = entityPositions;
+    }
+
+    @Nonnull
+    public static StructurePlacementPlan compile(@Nonnull DecodedWorldData data, @Nonnull AxisAlignedTransform2D transform)
+    {
+        int[] sourceSize = data.size();
+        int[] size = RCAxisAlignedTransform.applySize(transform, sourceSize);
+
+        IBlockState[] palette = new IBlockState[data.paletteSize()];
+        byte[] passes = new byte[palette.length];
+        for (int i = 0; i < palette.length; i++)
+        {
+            palette[i] = PosTransformer.transformBlockState(data.paletteState(i), transform);
+            passes[i] = (byte) GenericStructure.getPass(palette[i]);
+        }
+
+        int columns = size[0] * size[2];
+        int[] buckets = new int[data.volume()];
+        int[] bucketStarts = new int[PASSES * columns + 1];
+
+        BlockPos.MutableBlockPos sourcePos = new BlockPos.MutableBlockPos();
+        BlockPos.MutableBlockPos destPos = new BlockPos.MutableBlockPos();
+        int index = 0;
+        for (int z = 0; z < data.length; z++)
+            for (int y = 0; y < data.height; y++)
+                for (int x = 0; x < data.width; x++)
+                {
+                    transform.applyOn(sourcePos.setPos(x, y, z), destPos, sourceSize);
+
+                    int bucket = passes[data.paletteIndex(index)] * columns + destPos.getZ() * size[0] + destPos.getX();
+                    buckets[index++] = bucket;
+                    bucketStarts[bucket + 1]++;
+                }
+
+        for (int i = 1; i < bucketStarts.length; i++)
+            bucketStarts[i] += bucketStarts[i - 1];
+
+        // Source indices ascend in y per source column, and columns map onto columns - so every bucket ends up sorted by y
+        int[] cursors = bucketStarts.clone();
+        int[] sourceIndices = new int[buckets.length];
+        for (int i = 0; i < buckets.length; i++)
+            sourceIndices[cursors[buckets[i]]++] = i;
+
+        double[] entityPositions = new double[data.entities().size() * 3];
+        for (int i = 0; i < data.entities().size(); i++)
+        {
+            NBTTagList pos = data.entities().get(i).getTagList("Pos", Constants.NBT.TAG_DOUBLE);
+            double[] transformed = transform.applyOn(new double[]{pos.getDoubleAt(0), pos.getDoubleAt(1), pos.getDoubleAt(2)}, sourceSize);
+            System.arraycopy(transformed, 0, entityPositions, i * 3, 3);
+        }
+
+        return new StructurePlacementPlan(data, transform, size, palette, bucketStarts, sourceIndices, entityPositions);
+    }
+
+    public static int slot(AxisAlignedTransform2D transform)
+    {
+        return (transform.isMirrorX() ? 4 : 0) + transform.getRotation();
+    }
+
+    public int[] size()
+    {
+        return new int[]{width, height, length};
+    }
+
+    public int bucket(int pass, int x, int z)
+    {
+        return (pass * length + z) * width + x;
+    }
+
+    public int bucketStart(int bucket)
+    {
+        return bucketStarts[bucket];
+    }
+
+    /**
+     * @return The first entry in the bucket with a y of at least minY, or the bucket end.
+     */
+    public int bucketStart(int bucket, int minY)
+    {
+        int low = bucketStarts[bucket], high = bucketStarts[bucket + 1];
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (sourceY(sourceIndices[mid]) < minY)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    public int bucketEnd(int bucket)
+    {
+        return bucketStarts[bucket + 1];
+    }
+
+    public int sourceIndex(int entry)
+    {
+        return sourceIndices[entry];
+    }
+
+    public int sourceY(int sourceIndex)
+    {
+        return (sourceIndex / data.width) % data.height;
+    }
+
+    public BlockPos.MutableBlockPos sourcePos(int sourceIndex, BlockPos.MutableBlockPos pos)
+    {
+        int zy = sourceIndex / data.width;
+        return pos.setPos(sourceIndex % data.width, zy % data.height, zy / data.height);
+    }
+
+    /**
+     * @return The transformed block state for the source index.
+     */
+    @Nonnull
+    public IBlockState state(int sourceIndex)
+    {
+        return palette[data.paletteIndex(sourceIndex)];
+    }
+
+    public int entityCount()
+    {
+        return entityPositions.length / 3;
+    }
+
+    /**
+     * @return The entity's transformed position relative to the structure origin, on the given axis.
+     */
+    public double entityPosition(int entity, int axis)
+    {
+        return entityPositions[entity * 3 + axis];
+    }
+
+    public int weight()
+    {
+        return sourceIndices.length * 2 + bucketStarts.length * 2;
+    }
+}
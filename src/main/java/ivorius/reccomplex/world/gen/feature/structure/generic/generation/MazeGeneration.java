@@ -6,6 +6,7 @@
 package ivorius.reccomplex.world.gen.feature.structure.generic.generation;
 
 import com.google.gson.*;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
 import ivorius.ivtoolkit.maze.components.MazeRoom;
 import ivorius.ivtoolkit.random.WeightedSelector;
 import ivorius.ivtoolkit.tools.IvTranslations;
@@ -15,7 +16,9 @@ import ivorius.reccomplex.gui.editstructure.gentypes.TableDataSourceMazeGenerati
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.gui.table.datasource.TableDataSource;
+import ivorius.reccomplex.files.SimpleLeveledRegistry;
 import ivorius.reccomplex.json.JsonUtils;
+import ivorius.reccomplex.world.gen.feature.structure.Environment;
 import ivorius.reccomplex.world.gen.feature.structure.Placer;
 import ivorius.reccomplex.world.gen.feature.structure.Structure;
 import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
@@ -28,6 +31,9 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import javax.annotation.Nullable;
 import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -183,4 +189,38 @@ public class MazeGeneration extends GenerationType implements WeightedSelector.I
             return jsonObject;
         }
     }
+
+    public static class Cache extends SimpleLeveledRegistry.Module<StructureRegistry>
+    {
+        private static final int SIZE = 256;
+
+        // Mazes may be prepared on several threads
+        protected final Map<MazeComponentLibrary.Key, MazeComponentLibrary> libraries = Collections.synchronizedMap(new LinkedHashMap<MazeComponentLibrary.Key, MazeComponentLibrary>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MazeComponentLibrary.Key, MazeComponentLibrary> eldest)
+            {
+                return size() > SIZE;
+            }
+        });
+
+        public MazeComponentLibrary library(String mazeID, AxisAlignedTransform2D transform, Environment environment)
+        {
+            MazeComponentLibrary.Key key = new MazeComponentLibrary.Key(mazeID, transform, environment);
+
+            MazeComponentLibrary library = libraries.get(key);
+            if (library == null)
+            {
+                library = new MazeComponentLibrary(registry, mazeID, transform, environment);
+                libraries.put(key, library);
+            }
+            return library;
+        }
+
+        @Override
+        public void invalidate()
+        {
+            libraries.clear();
+        }
+    }
 }
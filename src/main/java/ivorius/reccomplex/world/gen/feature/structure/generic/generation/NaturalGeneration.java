@@ -195,7 +195,7 @@ public class NaturalGeneration extends GenerationType implements EnvironmentalSe
 
         public boolean areResolved(World world, String structureID)
         {
-            return WorldStructureGenerationData.get(world).getEntriesByID(structureID).size() < maxCount;
+            return WorldStructureGenerationData.get(world).getStructureCount(structureID) < maxCount;
         }
 
         public enum Context
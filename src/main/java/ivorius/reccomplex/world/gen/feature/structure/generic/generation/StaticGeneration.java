@@ -9,8 +9,8 @@ import com.google.gson.*;
 import com.google.gson.annotations.SerializedName;
 import ivorius.ivtoolkit.blocks.BlockSurfacePos;
 import ivorius.ivtoolkit.tools.IvTranslations;
-import ivorius.ivtoolkit.world.chunk.Chunks;
 import ivorius.reccomplex.client.rendering.MazeVisualizationContext;
+import ivorius.reccomplex.files.SimpleLeveledRegistry;
 import ivorius.reccomplex.gui.editstructure.gentypes.TableDataSourceStaticGeneration;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
@@ -18,7 +18,6 @@ import ivorius.reccomplex.gui.table.datasource.TableDataSource;
 import ivorius.reccomplex.json.JsonUtils;
 import ivorius.reccomplex.utils.algebra.ExpressionCache;
 import ivorius.reccomplex.utils.expression.DimensionExpression;
-import ivorius.reccomplex.world.RCChunks;
 import ivorius.reccomplex.world.gen.feature.structure.Placer;
 import ivorius.reccomplex.world.gen.feature.structure.Structure;
 import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
@@ -27,15 +26,16 @@ import ivorius.reccomplex.world.gen.feature.structure.generic.placement.Selectiv
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.reflect.Type;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
@@ -87,23 +87,12 @@ public class StaticGeneration extends GenerationType
 
     public static Stream<Triple<Structure<?>, StaticGeneration, BlockSurfacePos>> structuresAt(StructureRegistry registry, ChunkPos chunkPos, final World world, final BlockPos spawnPos)
     {
-        final Predicate<Pair<Structure<?>, StaticGeneration>> predicate = input ->
-        {
-            StaticGeneration info = input.getRight();
-
-            return info.dimensionExpression.test(world.provider)
-                    && (info.pattern != null || Chunks.contains(chunkPos, info.getPos(spawnPos)));
-        };
-        Stream<Pair<Structure<?>, StaticGeneration>> statics = registry.getGenerationTypes(StaticGeneration.class).stream().filter(predicate);
+        Cache cache = registry.module(Cache.class);
+        StaticGenerationIndex index = cache != null
+                ? cache.index(world.provider, spawnPos)
+                : new StaticGenerationIndex(registry.getGenerationTypes(StaticGeneration.class), world.provider, spawnPos);
 
-        return statics.flatMap(pair ->
-        {
-            StaticGeneration info = pair.getRight();
-            //noinspection ConstantConditions
-            return info.hasPattern()
-                    ? RCChunks.repeatIntersections(chunkPos, info.getPos(spawnPos), info.pattern.repeatX, info.pattern.repeatZ).map(pos -> Triple.of(pair.getLeft(), info, pos))
-                    : Stream.of(Triple.of(pair.getLeft(), info, info.getPos(spawnPos)));
-        });
+        return index.structuresAt(chunkPos, world.provider);
     }
 
     public BlockSurfacePos getPosition()
@@ -220,4 +209,27 @@ public class StaticGeneration extends GenerationType
             return jsonObject;
         }
     }
+
+    public static class Cache extends SimpleLeveledRegistry.Module<StructureRegistry>
+    {
+        // Per dimension; may be built by the planning threads as well
+        protected final Map<Integer, StaticGenerationIndex> indices = new ConcurrentHashMap<>();
+
+        public StaticGenerationIndex index(WorldProvider provider, BlockPos spawnPos)
+        {
+            StaticGenerationIndex index = indices.get(provider.getDimension());
+            if (index == null || !index.isValid(provider, spawnPos))
+            {
+                index = new StaticGenerationIndex(registry.getGenerationTypes(StaticGeneration.class), provider, spawnPos);
+                indices.put(provider.getDimension(), index);
+            }
+            return index;
+        }
+
+        @Override
+        public void invalidate()
+        {
+            indices.clear();
+        }
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.generation;
+
+import ivorius.ivtoolkit.blocks.BlockSurfacePos;
+import ivorius.reccomplex.dimensions.DimensionDictionary;
+import ivorius.reccomplex.utils.algebra.Algebra;
+import ivorius.reccomplex.utils.algebra.BoolFunctionExpressionCache;
+import ivorius.reccomplex.world.RCChunks;
+import ivorius.reccomplex.world.gen.feature.structure.Structure;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldProvider;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The static generations of one dimension, arranged so a chunk only looks at the generations that hit it.
+ * Fixed positions are bucketed by chunk. Patterns are grouped by period, and sorted by their offset along the
+ * more selective axis, so a chunk only scans the offsets its 16 blocks cover.
+ */
+public class StaticGenerationIndex
+{
+    public final int dimension;
+    public final BlockPos spawnPos;
+
+    protected final int dimensionGeneration;
+    protected final Set<String> dimensionTypes;
+
+    protected final Long2ObjectOpenHashMap<List<Entry>> fixed = new Long2ObjectOpenHashMap<>();
+    protected final List<Lattice> lattices = new ArrayList<>();
+
+    public StaticGenerationIndex(Collection<Pair<Structure<?>, StaticGeneration>> generations, WorldProvider provider, BlockPos spawnPos)
+    {
+        this.dimension = provider.getDimension();
+        this.spawnPos = spawnPos;
+        this.dimensionGeneration = DimensionDictionary.generation();
+        this.dimensionTypes = new HashSet<>(DimensionDictionary.getDimensionTypes(provider));
+
+        Map<Pair<Integer, Integer>, List<Entry>> periods = new LinkedHashMap<>();
+
+        int order = 0;
+        for (Pair<Structure<?>, StaticGeneration> pair : generations)
+        {
+            StaticGeneration generation = pair.getRight();
+            boolean readsGlobals = readsGlobals(generation);
+
+            if (readsGlobals || generation.dimensionExpression.test(provider))
+            {
+                Entry entry = new Entry(order, pair.getLeft(), generation, generation.getPos(spawnPos), readsGlobals);
+
+                if (generation.pattern == null)
+                    fixed.computeIfAbsent(ChunkPos.asLong(entry.pos.x >> 4, entry.pos.z >> 4), k -> new ArrayList<>()).add(entry);
+                else
+                    periods.computeIfAbsent(Pair.of(period(generation.pattern.repeatX), period(generation.pattern.repeatZ)), k -> new ArrayList<>()).add(entry);
+            }
+
+            order++;
+        }
+
+        periods.forEach((period, entries) -> lattices.add(new Lattice(period.getLeft(), period.getRight(), entries)));
+    }
+
+    protected static boolean readsGlobals(StaticGeneration generation)
+    {
+        Algebra.Expression<Boolean, ?> expression = generation.dimensionExpression.getParsedExpression();
+        return expression != null && !expression.walkVariables(v -> !v.identifier.startsWith(BoolFunctionExpressionCache.GLOBAL_PREFIX));
+    }
+
+    protected static int period(int repeat)
+    {
+        // Like RCChunks.repeatsInChunk, no repeat means a single position
+        return Math.max(repeat, 0);
+    }
+
+    public boolean isValid(WorldProvider provider, BlockPos spawnPos)
+    {
+        if (provider.getDimension() != dimension || !spawnPos.equals(this.spawnPos))
+            return false;
+
+        if (provider instanceof DimensionDictionary.Handler)
+            return DimensionDictionary.getDimensionTypes(provider).equals(dimensionTypes);
+
+        return dimensionGeneration == DimensionDictionary.generation();
+    }
+
+    /**
+     * @return All static structure positions in the chunk, in registry order.
+     */
+    public Stream<Triple<Structure<?>, StaticGeneration, BlockSurfacePos>> structuresAt(ChunkPos chunkPos, WorldProvider provider)
+    {
+        List<Entry> hits = new ArrayList<>();
+
+        List<Entry> fixedHits = fixed.get(ChunkPos.asLong(chunkPos.x, chunkPos.z));
+        if (fixedHits != null)
+            hits.addAll(fixedHits);
+
+        for (Lattice lattice : lattices)
+            lattice.collect(chunkPos, hits);
+
+        if (hits.isEmpty())
+            return Stream.empty();
+
+        hits.removeIf(entry -> entry.readsGlobals && !entry.generation.dimensionExpression.test(provider));
+        hits.sort(Comparator.comparingInt(entry -> entry.order));
+
+        return hits.stream().flatMap(entry -> entry.generation.pattern != null
+                ? RCChunks.repeatIntersections(chunkPos, entry.pos, entry.generation.pattern.repeatX, entry.generation.pattern.repeatZ)
+                .map(pos -> Triple.of(entry.structure, entry.generation, pos))
+                : Stream.of(Triple.of(entry.structure, entry.generation, entry.pos)));
+    }
+
+    /**
+     * @return The offset of the position in its period, or the position itself if it doesn't repeat.
+     */
+    protected static int offset(int pos, int period)
+    {
+        return period > 0 ? Math.floorMod(pos, period) : pos;
+    }
+
+    /**
+     * @return Whether any repeat of the position falls into the chunk, along one axis.
+     */
+    protected static boolean hits(int pos, int period, int chunk)
+    {
+        return period > 0 ? Math.floorMod(pos - (chunk << 4), period) < 16 : pos >> 4 == chunk;
+    }
+
+    protected static class Entry
+    {
+        public final int order;
+        public final Structure<?> structure;
+        public final StaticGeneration generation;
+        public final BlockSurfacePos pos;
+        public final boolean readsGlobals;
+
+        public Entry(int order, Structure<?> structure, StaticGeneration generation, BlockSurfacePos pos, boolean readsGlobals)
+        {
+            this.order = order;
+            this.structure = structure;
+            this.generation = generation;
+            this.pos = pos;
+            this.readsGlobals = readsGlobals;
+        }
+    }
+
+    protected static class Lattice
+    {
+        public final int periodX;
+        public final int periodZ;
+
+        // Whether entries are sorted along x, otherwise along z
+        protected final boolean alongX;
+        protected final Entry[] entries;
+        protected final int[] offsets;
+
+        public Lattice(int periodX, int periodZ, List<Entry> entries)
+        {
+            this.periodX = periodX;
+            this.periodZ = periodZ;
+
+            // A longer period (or none) leaves fewer entries per chunk
+            alongX = selectivity(periodX) >= selectivity(periodZ);
+
+            this.entries = entries.toArray(new Entry[0]);
+            Arrays.sort(this.entries, Comparator.comparingInt(this::offset));
+
+            offsets = new int[this.entries.length];
+            for (int i = 0; i < offsets.length; i++)
+                offsets[i] = offset(this.entries[i]);
+        }
+
+        protected static int selectivity(int period)
+        {
+            return period > 0 ? period : Integer.MAX_VALUE;
+        }
+
+        protected int offset(Entry entry)
+        {
+            return alongX ? StaticGenerationIndex.offset(entry.pos.x, periodX) : StaticGenerationIndex.offset(entry.pos.z, periodZ);
+        }
+
+        public void collect(ChunkPos chunkPos, List<Entry> hits)
+        {
+            int period = alongX ? periodX : periodZ;
+            int chunk = alongX ? chunkPos.x : chunkPos.z;
+
+            if (period > 0 && period <= 16)
+            {
+                // Every chunk is hit along this axis
+                collect(0, entries.length, chunkPos, hits);
+                return;
+            }
+
+            int min = StaticGenerationIndex.offset(chunk << 4, period);
+            int max = StaticGenerationIndex.offset((chunk << 4) + 15, period);
+
+            if (min <= max)
+                collect(lowerBound(min), lowerBound(max + 1), chunkPos, hits);
+            else
+            {
+                // The chunk wraps around the end of the period
+                collect(lowerBound(min), entries.length, chunkPos, hits);
+                collect(0, lowerBound(max + 1), chunkPos, hits);
+            }
+        }
+
+        protected void collect(int from, int to, ChunkPos chunkPos, List<Entry> hits)
+        {
+            for (int i = from; i < to; i++)
+            {
+                Entry entry = entries[i];
+                if (hits(entry.pos.x, periodX, chunkPos.x) && hits(entry.pos.z, periodZ, chunkPos.z))
+                    hits.add(entry);
+            }
+        }
+
+        protected int lowerBound(int offset)
+        {
+            int index = Arrays.binarySearch(offsets, offset);
+            if (index < 0)
+                return -index - 1;
+
+            // Find the first of equal offsets
+            while (index > 0 && offsets[index - 1] == offset)
+                index--;
+            return index;
+        }
+    }
+}
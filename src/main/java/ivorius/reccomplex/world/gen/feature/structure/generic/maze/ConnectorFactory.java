@@ -20,6 +20,18 @@ public class ConnectorFactory
 
     private final Map<String, Connector> connectors = new HashMap<>();
 
+    public ConnectorFactory()
+    {
+    }
+
+    /**
+     * Creates a factory that returns the same connectors as the given one.
+     */
+    public ConnectorFactory(ConnectorFactory factory)
+    {
+        connectors.putAll(factory.connectors);
+    }
+
     public Connector get(String id)
     {
         Connector connector = connectors.get(id);
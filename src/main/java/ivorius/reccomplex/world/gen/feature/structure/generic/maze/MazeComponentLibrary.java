@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.maze;
+
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.reccomplex.dimensions.DimensionDictionary;
+import ivorius.reccomplex.world.gen.feature.structure.Environment;
+import ivorius.reccomplex.world.gen.feature.structure.StructureRegistry;
+import ivorius.reccomplex.world.gen.feature.structure.VariableDomain;
+import ivorius.reccomplex.world.gen.feature.structure.generic.generation.GenerationType;
+import ivorius.reccomplex.world.gen.feature.structure.generic.generation.MazeGeneration;
+import net.minecraft.world.biome.Biome;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The components of a maze, transformed and weighed for one environment. Connectors only accept connectors from the
+ * same factory, so mazes built from the library must take their connectors from a copy of {@link #factory}.
+ */
+public class MazeComponentLibrary
+{
+    protected final ConnectorFactory factory;
+
+    public final Set<Connector> blockedConnections;
+    public final List<MazeComponentStructure<Connector>> components;
+
+    public MazeComponentLibrary(StructureRegistry registry, String mazeID, AxisAlignedTransform2D transform, Environment environment)
+    {
+        factory = new ConnectorFactory();
+        blockedConnections = Collections.singleton(factory.get(ConnectorStrategy.DEFAULT_WALL)); // TODO Make configurable
+
+        components = Collections.unmodifiableList(MazeGeneration.structures(registry, mazeID)
+                .flatMap(pair -> pair.getLeft().declaredVariables().omega(environment, true)
+                        .flatMap(domain -> WorldGenMaze.transforms(pair.getLeft(), pair.getRight(), transform, factory, environment.copy(domain), blockedConnections))
+                )
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return A new factory that knows all connectors of the components.
+     */
+    public ConnectorFactory factory()
+    {
+        return new ConnectorFactory(factory);
+    }
+
+    /**
+     * Everything about a maze generation the library depends on. Expressions may read any part of the environment,
+     * so all of it is part of the key, except for the world itself.
+     */
+    public static class Key
+    {
+        public final String mazeID;
+        public final AxisAlignedTransform2D transform;
+
+        protected final VariableDomain variables;
+        protected final Biome biome;
+        protected final int dimension;
+        protected final Set<String> dimensionTypes;
+        protected final Integer villageType;
+        protected final GenerationType generationType;
+
+        public Key(String mazeID, AxisAlignedTransform2D transform, Environment environment)
+        {
+            this.mazeID = mazeID;
+            this.transform = transform;
+            this.variables = environment.variables.copy();
+            this.biome = environment.biome;
+            this.dimension = environment.world.provider.getDimension();
+            this.dimensionTypes = new HashSet<>(DimensionDictionary.getDimensionTypes(environment.world.provider));
+            this.villageType = environment.villageType;
+            this.generationType = environment.generationType;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return dimension == key.dimension
+                    && mazeID.equals(key.mazeID)
+                    && transform.getRotation() == key.transform.getRotation()
+                    && transform.isMirrorX() == key.transform.isMirrorX()
+                    && variables.equals(key.variables)
+                    && biome == key.biome
+                    && dimensionTypes.equals(key.dimensionTypes)
+                    && Objects.equals(villageType, key.villageType)
+                    && generationType == key.generationType;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = mazeID.hashCode();
+            result = 31 * result + transform.getRotation();
+            result = 31 * result + (transform.isMirrorX() ? 1 : 0);
+            result = 31 * result + variables.hashCode();
+            result = 31 * result + System.identityHashCode(biome);
+            result = 31 * result + dimension;
+            result = 31 * result + dimensionTypes.hashCode();
+            result = 31 * result + Objects.hashCode(villageType);
+            result = 31 * result + System.identityHashCode(generationType);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.maze;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Solves mazes on a shared set of worker threads, so a solve can time out without blocking its caller forever.
+ * The solver doesn't react to interrupts, so timed out solves are cancelled through a {@link Cancellation} the
+ * solver checks as it goes, and their thread is free again shortly after.
+ */
+public class MazeSolverPool
+{
+    @Nullable
+    private static ThreadPoolExecutor executor;
+
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder timedOut = new LongAdder();
+    private static final AtomicInteger peakQueued = new AtomicInteger();
+
+    /**
+     * Runs the solver on the pool and waits for its result.
+     *
+     * @param timeout The time to wait in milliseconds, including the time spent queued, or negative to wait indefinitely.
+     * @throws TimeoutException If the solver didn't finish in time. It is cancelled.
+     */
+    public static <T> T solve(Function<Cancellation, T> solver, long timeout) throws TimeoutException, ExecutionException, InterruptedException
+    {
+        Cancellation cancellation = new Cancellation();
+        ThreadPoolExecutor executor = executor(RCConfig.mazeSolverThreads);
+
+        Future<T> future = executor.submit(() -> solver.apply(cancellation));
+        submitted.increment();
+        peakQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+
+        try
+        {
+            return timeout >= 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+        }
+        catch (TimeoutException e)
+        {
+            timedOut.increment();
+            RecurrentComplex.logger.debug("Maze solve timed out with {} solves running and {} queued", active(), queued());
+            throw e;
+        }
+        finally
+        {
+            // No-op if done; otherwise drops it from the queue, or stops it at its next check
+            cancellation.cancel();
+            future.cancel(false);
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor executor(int threads)
+    {
+        if (executor == null)
+        {
+            // Unbounded queue; every queued solve has a caller waiting on it, which bounds the queue already
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+            {
+                Thread thread = new Thread(r, "ReC Maze Solver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        else if (executor.getMaximumPoolSize() != threads)
+        {
+            if (threads > executor.getMaximumPoolSize())
+            {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            }
+            else
+            {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * @return The number of solves waiting for a thread.
+     */
+    public static synchronized int queued()
+    {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+    /**
+     * @return The number of solves running right now.
+     */
+    public static synchronized int active()
+    {
+        return executor != null ? executor.getActiveCount() : 0;
+    }
+
+    /**
+     * @return The most solves that were waiting for a thread at once.
+     */
+    public static int peakQueued()
+    {
+        return peakQueued.get();
+    }
+
+    public static long submitted()
+    {
+        return submitted.sum();
+    }
+
+    public static long timedOut()
+    {
+        return timedOut.sum();
+    }
+
+    /**
+     * Set once the caller stopped waiting for a solve.
+     */
+    public static class Cancellation
+    {
+        private volatile boolean cancelled;
+
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        /**
+         * @throws CancellationException If the solve was cancelled.
+         */
+        public void check()
+        {
+            if (cancelled)
+                throw new CancellationException("Maze solve was cancelled");
+        }
+    }
+}
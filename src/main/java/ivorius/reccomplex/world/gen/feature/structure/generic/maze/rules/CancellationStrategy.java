@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules;
+
+import ivorius.ivtoolkit.maze.components.*;
+import ivorius.reccomplex.world.gen.feature.structure.generic.maze.MazeSolverPool;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Wraps the predicate of a maze solve, and stops the solver once the solve is cancelled.
+ * The solver asks its predicate about every placement it tries, so this is checked throughout the search.
+ */
+public class CancellationStrategy<C> implements MazePredicate<C>
+{
+    @Nonnull
+    private MazePredicate<C> predicate;
+    @Nonnull
+    private MazeSolverPool.Cancellation cancellation;
+
+    public CancellationStrategy(@Nonnull MazePredicate<C> predicate, @Nonnull MazeSolverPool.Cancellation cancellation)
+    {
+        this.predicate = predicate;
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public boolean canPlace(MorphingMazeComponent<C> maze, ShiftedMazeComponent<?, C> component)
+    {
+        cancellation.check();
+        return predicate.canPlace(maze, component);
+    }
+
+    @Override
+    public void willPlace(MorphingMazeComponent<C> maze, ShiftedMazeComponent<?, C> component)
+    {
+        predicate.willPlace(maze, component);
+    }
+
+    @Override
+    public void didPlace(MorphingMazeComponent<C> maze, ShiftedMazeComponent<?, C> component)
+    {
+        predicate.didPlace(maze, component);
+    }
+
+    @Override
+    public void willUnplace(MorphingMazeComponent<C> maze, ShiftedMazeComponent<?, C> component)
+    {
+        cancellation.check();
+        predicate.willUnplace(maze, component);
+    }
+
+    @Override
+    public void didUnplace(MorphingMazeComponent<C> maze, ShiftedMazeComponent<?, C> component)
+    {
+        predicate.didUnplace(maze, component);
+    }
+
+    @Override
+    public boolean isDirtyConnection(MazeRoom dest, MazeRoom source, C c)
+    {
+        return predicate.isDirtyConnection(dest, source, c);
+    }
+}
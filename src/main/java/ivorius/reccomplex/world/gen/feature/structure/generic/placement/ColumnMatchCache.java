@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.placement;
+
+import ivorius.ivtoolkit.world.WorldCache;
+import ivorius.reccomplex.utils.expression.PositionedBlockExpression;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which positions match placer expressions, as two bitsets per block column (known, matched).
+ * One cache is shared by all placement attempts of a decoration pass on a thread, including columns in neighbor chunks.
+ * Within a pass, the world only changes when a structure generates, which invalidates the cache.
+ */
+public class ColumnMatchCache
+{
+    private static final ThreadLocal<ColumnMatchCache> current = new ThreadLocal<>();
+
+    public final World world;
+
+    private final int height;
+    private final int words;
+
+    private final Map<PositionedBlockExpression, Long2ObjectOpenHashMap<long[]>> results = new IdentityHashMap<>();
+
+    public ColumnMatchCache(World world)
+    {
+        this.world = world;
+        this.height = world.getHeight();
+        this.words = (height + 63) >> 6;
+    }
+
+    /**
+     * Starts a pass on this thread, unless one is running already.
+     *
+     * @return Whether a pass was started, and must be closed again.
+     */
+    public static boolean open(World world)
+    {
+        if (current.get() != null)
+            return false;
+
+        current.set(new ColumnMatchCache(world));
+        return true;
+    }
+
+    public static void close()
+    {
+        current.remove();
+    }
+
+    /**
+     * Forgets all results of the current pass, after the world has changed.
+     */
+    public static void invalidate()
+    {
+        ColumnMatchCache cache = current.get();
+        if (cache != null)
+            cache.results.clear();
+    }
+
+    @Nullable
+    public static ColumnMatchCache current(World world)
+    {
+        ColumnMatchCache cache = current.get();
+        return cache != null && cache.world == world ? cache : null;
+    }
+
+    /**
+     * Evaluates the expression at the position, using the current pass' results if there is one.
+     */
+    public static boolean evaluate(PositionedBlockExpression expression, WorldCache cache, BlockPos pos)
+    {
+        ColumnMatchCache columns = current(cache.world);
+        return columns != null
+                ? columns.matches(expression, cache, pos)
+                : expression.evaluate(() -> PositionedBlockExpression.Argument.at(cache, pos));
+    }
+
+    public boolean matches(PositionedBlockExpression expression, WorldCache cache, BlockPos pos)
+    {
+        int y = pos.getY();
+        if (y < 0 || y >= height)
+            return expression.evaluate(() -> PositionedBlockExpression.Argument.at(cache, pos));
+
+        Long2ObjectOpenHashMap<long[]> columns = results.computeIfAbsent(expression, e -> new Long2ObjectOpenHashMap<>());
+
+        long key = ChunkPos.asLong(pos.getX(), pos.getZ());
+        long[] column = columns.get(key);
+        if (column == null)
+            columns.put(key, column = new long[words * 2]);
+
+        int word = y >> 6;
+        long bit = 1L << (y & 63);
+        if ((column[word] & bit) != 0)
+            return (column[words + word] & bit) != 0;
+
+        boolean matches = expression.evaluate(() -> PositionedBlockExpression.Argument.at(cache, pos));
+
+        column[word] |= bit;
+        if (matches)
+            column[words + word] |= bit;
+
+        return matches;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.placement;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Counts, for every vertical shift in a range, how many source positions land on matching blocks.
+ * Each column is probed once over the heights any of its sources can reach. Runs of consecutive source
+ * heights are then counted for all shifts at once from prefix sums, as a sliding window over the column.
+ */
+public class ConformitySweep
+{
+    public final int minY;
+    public final int maxY;
+
+    private final int[] matched;
+
+    public ConformitySweep(int minY, int maxY)
+    {
+        this.minY = minY;
+        this.maxY = maxY;
+        this.matched = new int[Math.max(0, maxY - minY + 1)];
+    }
+
+    /**
+     * @param matches Whether the block at a height of the column matches. Asked at most once per height.
+     * @param heights The heights of the column's source positions, unshifted.
+     */
+    public void addColumn(IntPredicate matches, int[] heights)
+    {
+        if (heights.length == 0 || matched.length == 0)
+            return;
+
+        heights = heights.clone();
+        Arrays.sort(heights);
+
+        int lowest = heights[0] + minY;
+        int highest = heights[heights.length - 1] + maxY;
+
+        // prefix[i] = matching blocks in [lowest, lowest + i)
+        int[] prefix = new int[highest - lowest + 2];
+        for (int y = lowest; y <= highest; y++)
+            prefix[y - lowest + 1] = prefix[y - lowest] + (matches.test(y) ? 1 : 0);
+
+        int start = 0;
+        for (int i = 1; i <= heights.length; i++)
+        {
+            if (i < heights.length && heights[i] <= heights[i - 1] + 1)
+                continue;
+
+            // Run from heights[start] to heights[i - 1]; duplicates were already dropped by the caller's set
+            int runMin = heights[start], runMax = heights[i - 1];
+            for (int shift = minY; shift <= maxY; shift++)
+                matched[shift - minY] += prefix[runMax + shift - lowest + 1] - prefix[runMin + shift - lowest];
+
+            start = i;
+        }
+    }
+
+    /**
+     * The per-shift evaluation that sweeps replace: matches the sources one by one, giving up once more than allowed
+     * by the needed share failed.
+     *
+     * @param columns The heights of the source positions, unshifted, by column.
+     * @return Same as {@link #conformity(int, int, float)} of a sweep over the columns.
+     */
+    public static float conformity(Long2ObjectMap<int[]> columns, ColumnMatcher matcher, int shift, int sources, float needed)
+    {
+        int allowedFails = (int) (sources * (1f - needed));
+        int failChances = allowedFails;
+        int matched = 0;
+
+        for (Long2ObjectMap.Entry<int[]> column : columns.long2ObjectEntrySet())
+            for (int height : column.getValue())
+            {
+                if (matcher.matches(column.getLongKey(), height + shift))
+                    matched++;
+                else if (--failChances < 0)
+                    return 0; // Already lost
+            }
+
+        // Sources left out of the columns never match
+        return sources - matched <= allowedFails ? (float) matched / sources : 0;
+    }
+
+    public int matched(int shift)
+    {
+        return matched[shift - minY];
+    }
+
+    /**
+     * @return The share of matching sources at the shift, or 0 if more than allowed by the needed share failed.
+     * Same as evaluating every source and giving up once the allowed failures are exceeded.
+     */
+    public float conformity(int shift, int sources, float needed)
+    {
+        int failChances = (int) (sources * (1f - needed));
+        int matched = this.matched[shift - minY];
+
+        return sources - matched <= failChances ? (float) matched / sources : 0;
+    }
+
+    public interface ColumnMatcher
+    {
+        boolean matches(long column, int y);
+    }
+}
@@ -24,8 +24,11 @@ import ivorius.reccomplex.utils.IntegerRanges;
 import ivorius.reccomplex.utils.algebra.ExpressionCache;
 import ivorius.reccomplex.utils.expression.BlockExpression;
 import ivorius.reccomplex.utils.expression.PositionedBlockExpression;
-import net.minecraft.util.EnumFacing;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 import org.apache.commons.lang3.tuple.Pair;
@@ -67,20 +70,47 @@ public class FactorMatch extends GenericPlacer.Factor
                 || context.environment.world.isChunkGeneratedAt(pos.getX() >> 4, pos.getZ() >> 4);
     }
 
-    protected float weight(WorldCache cache, StructurePlaceContext context, Set<? extends BlockPos> sources, float needed)
+    /**
+     * Groups the sources by column, leaving out columns that can't be probed. Unprobed sources never match.
+     */
+    protected Long2ObjectOpenHashMap<int[]> probedColumns(StructurePlaceContext context, Set<BlockPos> sources)
     {
-        int failChances = (int) (sources.size() * (1f - needed));
-        int matched = 0;
-
+        Long2ObjectOpenHashMap<IntArrayList> columns = new Long2ObjectOpenHashMap<>();
         for (BlockPos pos : sources)
+            columns.computeIfAbsent(ChunkPos.asLong(pos.getX(), pos.getZ()), k -> new IntArrayList()).add(pos.getY());
+
+        Long2ObjectOpenHashMap<int[]> probed = new Long2ObjectOpenHashMap<>(columns.size());
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (Long2ObjectMap.Entry<IntArrayList> column : columns.long2ObjectEntrySet())
         {
-            if (canProbe(context, pos) && destMatcher.evaluate(() -> PositionedBlockExpression.Argument.at(cache, pos)))
-                matched++;
-            else if (--failChances < 0)
-                break;  // Already lost
+            int x = (int) column.getLongKey(), z = (int) (column.getLongKey() >> 32);
+            if (canProbe(context, pos.setPos(x, 0, z)))
+                probed.put(column.getLongKey(), column.getValue().toIntArray());
         }
 
-        return failChances >= 0 ? (float) matched / sources.size() : 0;
+        return probed;
+    }
+
+    protected ConformitySweep.ColumnMatcher matcher(WorldCache cache)
+    {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        return (column, y) -> ColumnMatchCache.evaluate(destMatcher, cache, pos.setPos((int) column, y, (int) (column >> 32)));
+    }
+
+    /**
+     * Matches all sources at all shifts of the range, probing every column only once.
+     */
+    protected ConformitySweep sweep(ConformitySweep.ColumnMatcher matcher, Long2ObjectOpenHashMap<int[]> columns, IntegerRange range)
+    {
+        ConformitySweep sweep = new ConformitySweep(range.getMin(), range.getMax());
+
+        for (Long2ObjectMap.Entry<int[]> column : columns.long2ObjectEntrySet())
+        {
+            long key = column.getLongKey();
+            sweep.addColumn(y -> matcher.matches(key, y), column.getValue());
+        }
+
+        return sweep;
     }
 
     @SideOnly(Side.CLIENT)
@@ -100,25 +130,32 @@ public class FactorMatch extends GenericPlacer.Factor
 
         int[] size = StructureBoundingBoxes.size(context.boundingBox);
         BlockPos lowerCoord = StructureBoundingBoxes.min(context.boundingBox);
-        Set<BlockPos.MutableBlockPos> sources = BlockAreas.streamMutablePositions(blockCollection.area())
+        Set<BlockPos> sources = BlockAreas.streamMutablePositions(blockCollection.area())
                 .filter(p -> sourceMatcher.evaluate(() -> blockCollection.getBlockState(p)))
-                .map(p -> new BlockPos.MutableBlockPos(context.transform.apply(p, size).add(lowerCoord.getX(), 0, lowerCoord.getZ())))
+                .map(p -> context.transform.apply(p, size).add(lowerCoord.getX(), 0, lowerCoord.getZ()))
                 .collect(Collectors.toSet());
 
-        for (IntegerRange range : (Iterable<IntegerRange>) considerable.streamSections(null, true)::iterator)
+        List<IntegerRange> ranges = considerable.streamSections(null, true).collect(Collectors.toList());
+        if (ranges.isEmpty())
+            return consideration;
+
+        Long2ObjectOpenHashMap<int[]> columns = probedColumns(context, sources);
+        ConformitySweep.ColumnMatcher matcher = matcher(cache);
+
+        for (IntegerRange range : ranges)
         {
+            // One sweep per range, so heights between ranges are never probed
+            ConformitySweep sweep = RCConfig.sweepPlacerConformity ? sweep(matcher, columns, range) : null;
+
             Float curConformity = null;
             int lastY = range.getMax();
             int end = range.getMin();
 
             for (int y = lastY; y >= end; y--)
             {
-                int finalY = y;
-                sources.forEach(p -> p.move(EnumFacing.UP, finalY));
-
-                float conformity = weight(cache, context, sources, requiredConformity);
-
-                sources.forEach(p -> p.move(EnumFacing.DOWN, finalY));
+                float conformity = sweep != null
+                        ? sweep.conformity(y, sources.size(), requiredConformity)
+                        : ConformitySweep.conformity(columns, matcher, y, sources.size(), requiredConformity);
 
                 if (curConformity == null)
                 {
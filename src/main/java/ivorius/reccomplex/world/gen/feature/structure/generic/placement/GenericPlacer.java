@@ -55,6 +55,20 @@ public class GenericPlacer
 
         WorldServer world = context.environment.world;
 
+        boolean opened = ColumnMatchCache.open(world);
+        try
+        {
+            return place(context, blockCollection, surface, world);
+        }
+        finally
+        {
+            if (opened)
+                ColumnMatchCache.close();
+        }
+    }
+
+    protected int place(StructurePlaceContext context, @Nullable IvBlockCollection blockCollection, Set<BlockPos> surface, WorldServer world)
+    {
         WorldCache cache = new WorldCache(world, StructureBoundingBoxes.wholeHeightBoundingBox(world, context.boundingBox));
 
         LineSelection considerable = LineSelection.fromRange(new IntegerRange(0, world.getHeight() - context.boundingBox.getYSize()), true);
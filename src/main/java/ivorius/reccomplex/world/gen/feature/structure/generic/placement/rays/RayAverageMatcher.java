@@ -25,6 +25,7 @@ import ivorius.reccomplex.gui.table.datasource.TableDataSourceSegmented;
 import ivorius.reccomplex.gui.table.datasource.TableDataSourceSupplied;
 import ivorius.reccomplex.json.JsonUtils;
 import ivorius.reccomplex.utils.expression.PositionedBlockExpression;
+import ivorius.reccomplex.world.gen.feature.structure.generic.placement.ColumnMatchCache;
 import ivorius.reccomplex.world.gen.feature.structure.generic.placement.FactorLimit;
 import ivorius.reccomplex.world.gen.feature.structure.generic.placement.StructurePlaceContext;
 import net.minecraft.util.EnumFacing;
@@ -174,7 +175,7 @@ public class RayAverageMatcher extends FactorLimit.Ray
 
         int averageGroundLevel = getAverageGroundLevel(up, y, shiftedSurface,
                 blockPos -> canProbe(context, blockPos)
-                        && destMatcher.evaluate(() -> PositionedBlockExpression.Argument.at(cache, blockPos)), cache.world.getHeight(),
+                        && ColumnMatchCache.evaluate(destMatcher, cache, blockPos), cache.world.getHeight(),
                 samples, context.random, RCConfig.rayAverageMaxHeightSpread);
         return averageGroundLevel >= 0 ? OptionalInt.of(averageGroundLevel) : OptionalInt.empty();
     }
@@ -23,6 +23,7 @@ import ivorius.reccomplex.gui.table.datasource.TableDataSourceSegmented;
 import ivorius.reccomplex.gui.table.datasource.TableDataSourceSupplied;
 import ivorius.reccomplex.json.JsonUtils;
 import ivorius.reccomplex.utils.expression.PositionedBlockExpression;
+import ivorius.reccomplex.world.gen.feature.structure.generic.placement.ColumnMatchCache;
 import ivorius.reccomplex.world.gen.feature.structure.generic.placement.FactorLimit;
 import ivorius.reccomplex.world.gen.feature.structure.generic.placement.StructurePlaceContext;
 import net.minecraft.util.math.BlockPos;
@@ -74,7 +75,7 @@ public class RayMatcher extends FactorLimit.Ray
         IvStreams.visit(surface.stream(), surfacePos ->
         {
             pos.setPos(surfacePos.getX(), surfacePos.getY() + y, surfacePos.getZ());
-            if (canProbe(context, pos) && destMatcher.evaluate(() -> PositionedBlockExpression.Argument.at(cache, pos)))
+            if (canProbe(context, pos) && ColumnMatchCache.evaluate(destMatcher, cache, pos))
                 return --need[0] > 0;
             else
                 return --chances[0] > 0; // Already lost
@@ -0,0 +1,277 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.transformers;
+
+import ivorius.reccomplex.nbt.PackedBlockPositions;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cloud densities on a dense grid in source coordinates. Positions without density are not part of the cloud.
+ * The grid grows when densities are set outside of it.
+ */
+public class CloudField
+{
+    public static final int GROWTH = 16;
+
+    protected int minX, minY, minZ;
+    protected int width, height, length;
+    protected float[] densities;
+
+    protected int size;
+
+    public CloudField()
+    {
+        this(0, 0, 0, 0, 0, 0);
+    }
+
+    public CloudField(int minX, int minY, int minZ, int width, int height, int length)
+    {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        densities = new float[width * height * length];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    protected int index(int x, int y, int z)
+    {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        return x >= 0 && y >= 0 && z >= 0 && x < width && y < height && z < length
+                ? (z * height + y) * width + x
+                : -1;
+    }
+
+    /**
+     * @return The density at the position, or 0 if it's not in the cloud.
+     */
+    public float get(int x, int y, int z)
+    {
+        int index = index(x, y, z);
+        return index >= 0 ? densities[index] : 0;
+    }
+
+    public float get(BlockPos pos)
+    {
+        return get(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean contains(int x, int y, int z)
+    {
+        return get(x, y, z) > 0;
+    }
+
+    public boolean contains(BlockPos pos)
+    {
+        return contains(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * @param density The new density, or 0 to remove the position.
+     */
+    public void set(int x, int y, int z, float density)
+    {
+        int index = index(x, y, z);
+        if (index < 0)
+        {
+            if (density <= 0)
+                return;
+
+            grow(x, y, z);
+            index = index(x, y, z);
+        }
+
+        if (densities[index] > 0) size--;
+        densities[index] = Math.max(density, 0);
+        if (densities[index] > 0) size++;
+    }
+
+    protected void grow(int x, int y, int z)
+    {
+        int minX = x < this.minX ? Math.min(x, this.minX - Math.max(GROWTH, width / 2)) : this.minX;
+        int minY = y < this.minY ? Math.min(y, this.minY - Math.max(GROWTH, height / 2)) : this.minY;
+        int minZ = z < this.minZ ? Math.min(z, this.minZ - Math.max(GROWTH, length / 2)) : this.minZ;
+        int maxX = x >= this.minX + width ? Math.max(x, this.minX + width - 1 + Math.max(GROWTH, width / 2)) : this.minX + width - 1;
+        int maxY = y >= this.minY + height ? Math.max(y, this.minY + height - 1 + Math.max(GROWTH, height / 2)) : this.minY + height - 1;
+        int maxZ = z >= this.minZ + length ? Math.max(z, this.minZ + length - 1 + Math.max(GROWTH, length / 2)) : this.minZ + length - 1;
+
+        resize(minX, minY, minZ, maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1);
+    }
+
+    protected void resize(int minX, int minY, int minZ, int width, int height, int length)
+    {
+        float[] densities = new float[width * height * length];
+
+        for (int z = Math.max(minZ, this.minZ); z < Math.min(minZ + length, this.minZ + this.length); z++)
+            for (int y = Math.max(minY, this.minY); y < Math.min(minY + height, this.minY + this.height); y++)
+            {
+                int fromX = Math.max(minX, this.minX), toX = Math.min(minX + width, this.minX + this.width);
+                if (fromX < toX)
+                    System.arraycopy(this.densities, index(fromX, y, z), densities, ((z - minZ) * height + (y - minY)) * width + (fromX - minX), toX - fromX);
+            }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.densities = densities;
+    }
+
+    /**
+     * Shrinks the grid to the bounds of the cloud.
+     */
+    public void trim()
+    {
+        if (size == 0)
+        {
+            resize(0, 0, 0, 0, 0, 0);
+            return;
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        int index = 0;
+        for (int z = 0; z < length; z++)
+            for (int y = 0; y < height; y++)
+                for (int x = 0; x < width; x++)
+                {
+                    if (densities[index++] > 0)
+                    {
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        minZ = Math.min(minZ, z);
+                        maxX = Math.max(maxX, x);
+                        maxY = Math.max(maxY, y);
+                        maxZ = Math.max(maxZ, z);
+                    }
+                }
+
+        if (maxX - minX + 1 != width || maxY - minY + 1 != height || maxZ - minZ + 1 != length)
+            resize(this.minX + minX, this.minY + minY, this.minZ + minZ, maxX - minX + 1, maxY - minY + 1, maxZ - minZ + 1);
+    }
+
+    /**
+     * Visits all positions of the cloud, in grid order. The position is reused between calls.
+     */
+    public void forEach(Visitor visitor)
+    {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+        int index = 0;
+        for (int z = 0; z < length; z++)
+            for (int y = 0; y < height; y++)
+                for (int x = 0; x < width; x++)
+                {
+                    float density = densities[index++];
+                    if (density > 0)
+                        visitor.visit(pos.setPos(minX + x, minY + y, minZ + z), density);
+                }
+    }
+
+    public void readFromNBT(NBTTagCompound compound)
+    {
+        resize(0, 0, 0, 0, 0, 0);
+        size = 0;
+
+        if (compound.hasKey("cloudGrid", Constants.NBT.TAG_INT_ARRAY))
+        {
+            int[] grid = compound.getIntArray("cloudGrid");
+            byte[] gridDensities = compound.getByteArray("cloudGridDensities");
+
+            if (grid.length == 6 && gridDensities.length == grid[3] * grid[4] * grid[5])
+            {
+                resize(grid[0], grid[1], grid[2], grid[3], grid[4], grid[5]);
+                for (int i = 0; i < gridDensities.length; i++)
+                {
+                    if (gridDensities[i] != 0)
+                    {
+                        densities[i] = dequantize(gridDensities[i]);
+                        size++;
+                    }
+                }
+            }
+        }
+        else if (compound.hasKey("cloudPositions", Constants.NBT.TAG_INT_ARRAY))
+        {
+            List<BlockPos> positions = PackedBlockPositions.unpack(compound.getIntArray("cloudPositions"));
+            byte[] densities = compound.getByteArray("cloudDensities");
+            for (int i = 0; i < positions.size(); i++)
+            {
+                BlockPos pos = positions.get(i);
+                set(pos.getX(), pos.getY(), pos.getZ(), i < densities.length ? dequantize(densities[i]) : 1);
+            }
+        }
+    }
+
+    /**
+     * Writes the grid if most of it is filled, and the positions otherwise.
+     */
+    public void writeToNBT(NBTTagCompound compound)
+    {
+        trim();
+
+        // A byte per cell, against an int and a byte per position
+        if ((long) width * height * length <= (long) size * 5)
+        {
+            byte[] gridDensities = new byte[densities.length];
+            for (int i = 0; i < densities.length; i++)
+                gridDensities[i] = densities[i] > 0 ? quantize(densities[i]) : 0;
+
+            compound.setIntArray("cloudGrid", new int[]{minX, minY, minZ, width, height, length});
+            compound.setByteArray("cloudGridDensities", gridDensities);
+            return;
+        }
+
+        List<BlockPos> positions = new ArrayList<>(size);
+        byte[] packedDensities = new byte[size];
+        forEach((pos, density) ->
+        {
+            packedDensities[positions.size()] = quantize(density);
+            positions.add(pos.toImmutable());
+        });
+
+        //noinspection ConstantConditions The trimmed grid is indexable
+        compound.setIntArray("cloudPositions", PackedBlockPositions.pack(positions));
+        compound.setByteArray("cloudDensities", packedDensities);
+    }
+
+    protected static byte quantize(double density)
+    {
+        // Keep non-zero densities non-zero
+        return (byte) Math.max(1, Math.min(255, (int) Math.round(density * 255)));
+    }
+
+    protected static float dequantize(byte density)
+    {
+        return (density & 0xff) / 255f;
+    }
+
+    public interface Visitor
+    {
+        void visit(BlockPos.MutableBlockPos pos, float density);
+    }
+}
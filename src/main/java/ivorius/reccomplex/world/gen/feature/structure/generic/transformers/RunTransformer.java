@@ -5,6 +5,9 @@
 
 package ivorius.reccomplex.world.gen.feature.structure.generic.transformers;
 
+import ivorius.ivtoolkit.tools.IvWorldData;
+import ivorius.reccomplex.world.gen.feature.structure.context.StructureSpawnContext;
+
 /**
  * Created by lukas on 25.10.16.
  */
@@ -13,9 +16,21 @@ public class RunTransformer
     public final TransformerMulti transformer;
     public final TransformerMulti.InstanceData instanceData;
 
+    protected TransformerPipeline pipeline;
+
     public RunTransformer(TransformerMulti transformer, TransformerMulti.InstanceData instanceData)
     {
         this.transformer = transformer;
         this.instanceData = instanceData;
     }
+
+    /**
+     * @return The flattened transformers for generating with the context, compiled on first use.
+     */
+    public TransformerPipeline pipeline(StructureSpawnContext context, IvWorldData worldData)
+    {
+        if (pipeline == null || pipeline.context != context || pipeline.worldData != worldData)
+            pipeline = new TransformerPipeline(this, context, worldData);
+        return pipeline;
+    }
 }
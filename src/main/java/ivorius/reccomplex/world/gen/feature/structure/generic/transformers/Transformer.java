@@ -99,6 +99,15 @@ public abstract class Transformer<S extends NBTStorable>
         return false;
     }
 
+    /**
+     * @return Whether {@link #skipGeneration} only depends on the source block, so it may be decided once per
+     * source position before anything is generated.
+     */
+    public boolean skipsBySource(S instanceData)
+    {
+        return false;
+    }
+
     public void transform(S instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, RunTransformer transformer)
     {
 
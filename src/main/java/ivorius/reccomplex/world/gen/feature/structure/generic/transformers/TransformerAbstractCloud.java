@@ -5,9 +5,6 @@
 
 package ivorius.reccomplex.world.gen.feature.structure.generic.transformers;
 
-import com.google.common.collect.Sets;
-import gnu.trove.map.TObjectDoubleMap;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
 import ivorius.ivtoolkit.blocks.BlockAreas;
 import ivorius.ivtoolkit.blocks.BlockPositions;
 import ivorius.ivtoolkit.blocks.IvBlockCollection;
@@ -21,12 +18,14 @@ import ivorius.reccomplex.world.gen.feature.structure.Environment;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructureLiveContext;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructurePrepareContext;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructureSpawnContext;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
+import net.minecraftforge.common.util.Constants;
 
 import javax.annotation.Nonnull;
 import java.util.*;
@@ -71,14 +70,19 @@ public abstract class TransformerAbstractCloud<S extends TransformerAbstractClou
         return matches(instanceData, state);
     }
 
-    public TObjectDoubleMap<BlockPos> buildCloud(S instanceData, IvWorldData worldData, StructurePrepareContext context, TransformerMulti transformer, TransformerMulti.InstanceData transformerInstanceData)
+    @Override
+    public boolean skipsBySource(S instanceData)
+    {
+        return true;
+    }
+
+    public CloudField buildCloud(S instanceData, IvWorldData worldData, StructurePrepareContext context, TransformerMulti transformer, TransformerMulti.InstanceData transformerInstanceData)
     {
         Random random = context.random;
         Environment environment = context.environment;
         BlockPos lowerCoord = StructureBoundingBoxes.min(context.boundingBox);
         int[] strucSize = new int[]{worldData.blockCollection.width, worldData.blockCollection.height, worldData.blockCollection.length};
 
-        TObjectDoubleMap<BlockPos> cloud = new TObjectDoubleHashMap<>();
         BlurredValueField blurredValueField = new BlurredValueField(strucSize);
 
         int gridCoords = 1;
@@ -88,19 +92,27 @@ public abstract class TransformerAbstractCloud<S extends TransformerAbstractClou
         for (int i = 0; i < values; i++)
             blurredValueField.addValue(1 + (random.nextFloat() - random.nextFloat()) * (float) cloudExpansionRandomization() / 100f, random);
 
-        BlockAreas.mutablePositions(worldData.blockCollection.area()).forEach(pos ->
+        double expansionDistance = cloudExpansionDistance();
+        boolean expands = expansionDistance > 0.000001;
+
+        // Leave room for the expansion, the field grows if that isn't enough
+        int margin = expands ? MathHelper.clamp(MathHelper.ceil(expansionDistance * 1.5), 1, CloudField.GROWTH) : 0;
+        CloudField cloud = new CloudField(-margin, -margin, -margin, strucSize[0] + margin * 2, strucSize[1] + margin * 2, strucSize[2] + margin * 2);
+        IntArrayFIFOQueue changed = new IntArrayFIFOQueue();
+
+        BlockPos.MutableBlockPos worldCoord = new BlockPos.MutableBlockPos();
+        for (BlockPos.MutableBlockPos pos : BlockAreas.mutablePositions(worldData.blockCollection.area()))
         {
             IBlockState state = worldData.blockCollection.getBlockState(pos);
-            BlockPos worldCoord = context.transform.apply(pos, strucSize).add(lowerCoord);
+            IvMutableBlockPos.add(context.transform.applyOn(pos, worldCoord, strucSize), lowerCoord);
             if (matches(instanceData, state) && canPenetrate(environment, worldData, worldCoord, 1, transformer, transformerInstanceData))
-                cloud.put(pos.toImmutable(), 1);
-        });
-
-        double expansionDistance = cloudExpansionDistance();
-        BlockPos.MutableBlockPos sidePos = new BlockPos.MutableBlockPos();
-        BlockPos.MutableBlockPos sideWorldCoord = new BlockPos.MutableBlockPos();
+            {
+                cloud.set(pos.getX(), pos.getY(), pos.getZ(), 1);
+                enqueue(changed, pos.getX(), pos.getY(), pos.getZ());
+            }
+        }
 
-        if (expansionDistance > 0.000001)
+        if (expands)
         {
             // The code below will be called _often_, so let's cache the divisions
             double[] sideFalloffs = new double[6];
@@ -116,36 +128,45 @@ public abstract class TransformerAbstractCloud<S extends TransformerAbstractClou
                 }
             }
 
-            visitRecursively(Sets.newHashSet(cloud.keySet()), (changed, pos) ->
+            BlockPos.MutableBlockPos sidePos = new BlockPos.MutableBlockPos();
+
+            // A position is queued again whenever its density rises, and expands with its latest density
+            while (!changed.isEmpty())
             {
-                double density = cloud.get(pos);
+                int x = changed.dequeueInt(), y = changed.dequeueInt(), z = changed.dequeueInt();
+                double density = cloud.get(x, y, z);
 
                 for (EnumFacing side : checkSides)
                 {
                     double sideFalloff = sideFalloffs[side.getIndex()];
 
-                    IvMutableBlockPos.offset(pos, sidePos, side);
+                    sidePos.setPos(x + side.getFrontOffsetX(), y + side.getFrontOffsetY(), z + side.getFrontOffsetZ());
 
                     double sideDensity = density - sideFalloff * blurredValueField.getValue(sidePos.getX(), sidePos.getY(), sidePos.getZ());
                     if (sideDensity <= 0 || cloud.get(sidePos) >= sideDensity - 0.00001)
                         continue;
 
-                    IvMutableBlockPos.add(context.transform.applyOn(sidePos, sideWorldCoord, strucSize), lowerCoord);
-                    if (!canPenetrate(environment, worldData, sideWorldCoord, sideDensity, transformer, transformerInstanceData))
+                    IvMutableBlockPos.add(context.transform.applyOn(sidePos, worldCoord, strucSize), lowerCoord);
+                    if (!canPenetrate(environment, worldData, worldCoord, sideDensity, transformer, transformerInstanceData))
                         continue;
 
-                    BlockPos immutableSidePos = sidePos.toImmutable();
-
-                    cloud.put(immutableSidePos, sideDensity);
-                    changed.add(immutableSidePos);
+                    cloud.set(sidePos.getX(), sidePos.getY(), sidePos.getZ(), (float) sideDensity);
+                    enqueue(changed, sidePos.getX(), sidePos.getY(), sidePos.getZ());
                 }
-                return true;
-            });
+            }
         }
 
+        cloud.trim();
         return cloud;
     }
 
+    protected static void enqueue(IntArrayFIFOQueue queue, int x, int y, int z)
+    {
+        queue.enqueue(x);
+        queue.enqueue(y);
+        queue.enqueue(z);
+    }
+
     public boolean canPenetrate(Environment environment, IvWorldData worldData, BlockPos pos, double density, TransformerMulti transformer, TransformerMulti.InstanceData transformerID)
     {
         return true;
@@ -172,11 +193,10 @@ public abstract class TransformerAbstractCloud<S extends TransformerAbstractClou
             BlockPos lowerCoord = StructureBoundingBoxes.min(context.boundingBox);
 
             BlockPos.MutableBlockPos worldCoord = new BlockPos.MutableBlockPos();
-            instanceData.cloud.forEachEntry((sourcePos, density) ->
+            instanceData.cloud.forEach((sourcePos, density) ->
             {
                 IvMutableBlockPos.add(context.transform.applyOn(sourcePos, worldCoord, areaSize), lowerCoord);
                 transformBlock(instanceData, phase, context, sourcePos, worldCoord, worldData.blockCollection.getBlockState(sourcePos), density);
-                return true;
             });
         }
     }
@@ -189,35 +209,31 @@ public abstract class TransformerAbstractCloud<S extends TransformerAbstractClou
 
     public static class InstanceData implements NBTStorable
     {
-        public TObjectDoubleMap<BlockPos> cloud = new TObjectDoubleHashMap<>();
+        public CloudField cloud = new CloudField();
 
         public void readFromNBT(NBTBase base)
         {
             NBTTagCompound compound = base instanceof NBTTagCompound ? (NBTTagCompound) base : new NBTTagCompound();
-            NBTTagLists.compoundsFrom(compound, "cloud").forEach(cloudCompound ->
+
+            if (compound.hasKey("cloud", Constants.NBT.TAG_LIST)) // Legacy
             {
-                BlockPos pos = BlockPositions.readFromNBT("particle", cloudCompound);
-                if (pos != null)
-                    cloud.put(pos, cloudCompound.getDouble("density"));
-            });
+                NBTTagLists.compoundsFrom(compound, "cloud").forEach(cloudCompound ->
+                {
+                    BlockPos pos = BlockPositions.readFromNBT("particle", cloudCompound);
+                    if (pos != null)
+                        cloud.set(pos.getX(), pos.getY(), pos.getZ(), (float) cloudCompound.getDouble("density"));
+                });
+            }
+            else
+                cloud.readFromNBT(compound);
         }
 
         @Override
         public NBTBase writeToNBT()
         {
             NBTTagCompound compound = new NBTTagCompound();
-
-            List<NBTTagCompound> cloudCompounds = new ArrayList<>();
-            cloud.forEachEntry((pos, density) ->
-            {
-                NBTTagCompound cloudCompound = new NBTTagCompound();
-                BlockPositions.writeToNBT("particle", pos, cloudCompound);
-                cloudCompound.setDouble("density", density);
-                cloudCompounds.add(cloudCompound);
-                return true;
-            });
-            NBTTagLists.writeTo(compound, "cloud", cloudCompounds);
-
+            // Densities are only needed while building the cloud, so a byte each is plenty
+            cloud.writeToNBT(compound);
             return compound;
         }
     }
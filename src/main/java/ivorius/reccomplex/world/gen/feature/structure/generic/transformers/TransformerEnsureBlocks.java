@@ -79,6 +79,12 @@ public class TransformerEnsureBlocks extends Transformer<NBTNone>
         return false;
     }
 
+    @Override
+    public boolean skipsBySource(NBTNone instanceData)
+    {
+        return true;
+    }
+
     @Override
     public void transform(NBTNone instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, RunTransformer transformer)
     {
@@ -106,6 +106,12 @@ public class TransformerGenerationBehavior extends Transformer<TransformerGenera
         return UnstableBlock.shouldSkipState(state) && !instanceData.allowedGTECoords.contains(sourcePos);
     }
 
+    @Override
+    public boolean skipsBySource(InstanceData instanceData)
+    {
+        return true;
+    }
+
     @Override
     public TransformerGenerationBehavior.InstanceData prepareInstanceData(StructurePrepareContext context, IvWorldData worldData)
     {
@@ -101,7 +101,7 @@ public class TransformerNatural extends TransformerAbstractCloud<TransformerNatu
         IBlockState mainBlock = Blocks.STONE.getDefaultState();
 
         boolean useStoneBlock = pos.getY() < world.getSeaLevel() - 3;
-        IBlockState setBlock = useStoneBlock ? mainBlock : (instanceData.cloud.containsKey(sourcePos.up()) ? fillerBlock : topBlock);
+        IBlockState setBlock = useStoneBlock ? mainBlock : (instanceData.cloud.contains(sourcePos.getX(), sourcePos.getY() + 1, sourcePos.getZ()) ? fillerBlock : topBlock);
 
         if (world.provider.getDimension() == -1)
             setBlock = Blocks.NETHERRACK.getDefaultState();
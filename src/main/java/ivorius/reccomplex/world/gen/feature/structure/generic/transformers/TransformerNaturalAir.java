@@ -31,7 +31,6 @@ import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
@@ -40,7 +39,6 @@ import javax.annotation.Nullable;
 import java.lang.reflect.Type;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -108,11 +106,18 @@ public class TransformerNaturalAir extends TransformerAbstractCloud<TransformerN
             BlockPos lowerCoord = StructureBoundingBoxes.min(context.boundingBox);
 
             // Remove dying foliage
-            HashSet<BlockPos> check = instanceData.cloud.keySet().stream()
-                    .flatMap(pos -> new BlockArea(pos.subtract(new Vec3i(2, 2, 2)), pos.add(new Vec3i(2, 2, 2))).stream())
-                    .filter(pos -> !instanceData.cloud.containsKey(pos))
-                    .map(pos -> context.transform.apply(pos, areaSize).add(lowerCoord))
-                    .collect(Collectors.toCollection(HashSet::new));
+            HashSet<BlockPos> check = new HashSet<>();
+            BlockPos.MutableBlockPos checkPos = new BlockPos.MutableBlockPos();
+            instanceData.cloud.forEach((pos, density) ->
+            {
+                for (int x = pos.getX() - 2; x <= pos.getX() + 2; x++)
+                    for (int y = pos.getY() - 2; y <= pos.getY() + 2; y++)
+                        for (int z = pos.getZ() - 2; z <= pos.getZ() + 2; z++)
+                        {
+                            if (!instanceData.cloud.contains(x, y, z))
+                                check.add(context.transform.apply(checkPos.setPos(x, y, z), areaSize).add(lowerCoord));
+                        }
+            });
 
             Set<BlockPos> remove = new HashSet<>();
             HashSet<BlockPos> start = new HashSet<>();
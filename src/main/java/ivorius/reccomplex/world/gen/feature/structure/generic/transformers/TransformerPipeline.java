@@ -0,0 +1,219 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.world.gen.feature.structure.generic.transformers;
+
+import ivorius.ivtoolkit.blocks.BlockAreas;
+import ivorius.ivtoolkit.blocks.IvBlockCollection;
+import ivorius.ivtoolkit.blocks.IvMutableBlockPos;
+import ivorius.ivtoolkit.tools.IvWorldData;
+import ivorius.ivtoolkit.world.chunk.gen.StructureBoundingBoxes;
+import ivorius.reccomplex.nbt.NBTStorable;
+import ivorius.reccomplex.utils.RCStructureBoundingBoxes;
+import ivorius.reccomplex.world.gen.feature.structure.context.StructureSpawnContext;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A {@link RunTransformer} flattened for one spawn. All skip decisions that only depend on the source block are made
+ * in a single sweep up front, and {@link TransformerSingleBlock}s transform from those results instead of matching again.
+ */
+public class TransformerPipeline
+{
+    public final RunTransformer runTransformer;
+    public final StructureSpawnContext context;
+    public final IvWorldData worldData;
+
+    // Active leaves of the transformer tree, in generation order
+    protected final List<Pair<Transformer, NBTStorable>> leaves = new ArrayList<>();
+    // Leaves whose skip decision may depend on the world, asked per block
+    protected final List<Pair<Transformer, NBTStorable>> liveSkips = new ArrayList<>();
+
+    @Nullable
+    protected final StructureBoundingBox relevantSourceArea;
+    protected final int[] areaSize;
+
+    // Per source index, whether the source skips were decided, and their result
+    protected final BitSet decided = new BitSet();
+    protected final BitSet skipped = new BitSet();
+    // Per leaf that is a TransformerSingleBlock, the source indices it matches
+    protected final BitSet[] matched;
+
+    public TransformerPipeline(RunTransformer runTransformer, StructureSpawnContext context, IvWorldData worldData)
+    {
+        this.runTransformer = runTransformer;
+        this.context = context;
+        this.worldData = worldData;
+
+        flatten(runTransformer.instanceData, leaves);
+
+        IvBlockCollection blockCollection = worldData.blockCollection;
+        areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
+        relevantSourceArea = context.sourceIntersection(BlockAreas.toBoundingBox(blockCollection.area()));
+
+        matched = new BitSet[leaves.size()];
+        List<Pair<Transformer, NBTStorable>> sourceSkips = new ArrayList<>();
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            Pair<Transformer, NBTStorable> leaf = leaves.get(i);
+
+            //noinspection unchecked
+            if (!leaf.getLeft().skipsBySource(leaf.getRight()))
+                liveSkips.add(leaf);
+            else if (leaf.getLeft() instanceof TransformerSingleBlock)
+                matched[i] = new BitSet();
+            else
+                sourceSkips.add(leaf);
+        }
+
+        if (relevantSourceArea != null)
+            decideSkips(sourceSkips);
+    }
+
+    protected static void flatten(TransformerMulti.InstanceData instanceData, List<Pair<Transformer, NBTStorable>> leaves)
+    {
+        if (instanceData.deactivated)
+            return;
+
+        for (Pair<Transformer, NBTStorable> pair : instanceData.pairedTransformers)
+        {
+            if (pair.getLeft() instanceof TransformerMulti)
+                flatten((TransformerMulti.InstanceData) pair.getRight(), leaves);
+            else
+                leaves.add(pair);
+        }
+    }
+
+    protected int sourceIndex(BlockPos sourcePos)
+    {
+        return (sourcePos.getZ() * areaSize[1] + sourcePos.getY()) * areaSize[0] + sourcePos.getX();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void decideSkips(List<Pair<Transformer, NBTStorable>> sourceSkips)
+    {
+        IvBlockCollection blockCollection = worldData.blockCollection;
+        BlockPos lowerCoord = StructureBoundingBoxes.min(context.boundingBox);
+
+        BlockPos.MutableBlockPos worldCoord = new BlockPos.MutableBlockPos();
+        for (BlockPos sourceCoord : RCStructureBoundingBoxes.mutablePositions(relevantSourceArea))
+        {
+            IvMutableBlockPos.add(context.transform.applyOn(sourceCoord, worldCoord, areaSize), lowerCoord);
+
+            if (!context.includesComplex(worldCoord))
+                continue;
+
+            IBlockState state = blockCollection.getBlockState(sourceCoord);
+            int index = sourceIndex(sourceCoord);
+            decided.set(index);
+
+            for (int i = 0; i < matched.length; i++)
+            {
+                if (matched[i] != null)
+                {
+                    Pair<Transformer, NBTStorable> leaf = leaves.get(i);
+                    if (((TransformerSingleBlock) leaf.getLeft()).matches(context.environment, leaf.getRight(), sourceCoord, state))
+                    {
+                        matched[i].set(index);
+                        skipped.set(index);
+                    }
+                }
+            }
+
+            if (!skipped.get(index))
+            {
+                for (Pair<Transformer, NBTStorable> leaf : sourceSkips)
+                {
+                    if (leaf.getLeft().skipGeneration(leaf.getRight(), context, worldCoord, state, worldData, sourceCoord))
+                    {
+                        skipped.set(index);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link TransformerMulti#skipGeneration} on the run transformer, for positions inside the spawn.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean skipGeneration(BlockPos pos, IBlockState state, BlockPos sourcePos)
+    {
+        int index = sourceIndex(sourcePos);
+        if (!decided.get(index))
+            return runTransformer.transformer.skipGeneration(runTransformer.instanceData, context, pos, state, worldData, sourcePos);
+
+        if (skipped.get(index))
+            return true;
+
+        for (Pair<Transformer, NBTStorable> leaf : liveSkips)
+        {
+            if (leaf.getLeft().skipGeneration(leaf.getRight(), context, pos, state, worldData, sourcePos))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Same as {@link TransformerMulti#transform} on the run transformer.
+     */
+    @SuppressWarnings("unchecked")
+    public void transform(Transformer.Phase phase)
+    {
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            Pair<Transformer, NBTStorable> leaf = leaves.get(i);
+
+            if (matched[i] != null)
+                transformSingleBlock(phase, i);
+            else
+                leaf.getLeft().transform(leaf.getRight(), phase, context, worldData, runTransformer);
+        }
+    }
+
+    /**
+     * Like {@link TransformerSingleBlock#transform}, sweeping in the same order so random draws and overwrites stay
+     * the same, but with the matches from the up front sweep.
+     */
+    @SuppressWarnings("unchecked")
+    protected void transformSingleBlock(Transformer.Phase phase, int leafIndex)
+    {
+        Pair<Transformer, NBTStorable> leaf = leaves.get(leafIndex);
+        TransformerSingleBlock transformer = (TransformerSingleBlock) leaf.getLeft();
+        BitSet matched = this.matched[leafIndex];
+
+        if (!transformer.generatesInPhase(leaf.getRight(), phase) || relevantSourceArea == null || matched.isEmpty())
+            return;
+
+        IvBlockCollection blockCollection = worldData.blockCollection;
+        BlockPos lowerCoord = StructureBoundingBoxes.min(context.boundingBox);
+
+        // Freeze height to speed up light calculation
+        context.freezeHeightMap(context.intersection(context.boundingBox));
+
+        BlockPos.MutableBlockPos worldCoord = new BlockPos.MutableBlockPos();
+        for (BlockPos sourceCoord : RCStructureBoundingBoxes.mutablePositions(relevantSourceArea))
+        {
+            if (!matched.get(sourceIndex(sourceCoord)))
+                continue;
+
+            IvMutableBlockPos.add(context.transform.applyOn(sourceCoord, worldCoord, areaSize), lowerCoord);
+            IBlockState state = blockCollection.getBlockState(sourceCoord);
+
+            transformer.transformBlock(leaf.getRight(), Transformer.Phase.BEFORE, context, runTransformer, areaSize, worldCoord, state);
+        }
+
+        context.meltHeightMap();
+    }
+}
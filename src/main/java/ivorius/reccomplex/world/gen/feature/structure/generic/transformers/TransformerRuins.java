@@ -5,8 +5,6 @@
 
 package ivorius.reccomplex.world.gen.feature.structure.generic.transformers;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
 import com.google.gson.*;
 import gnu.trove.map.TObjectDoubleMap;
 import gnu.trove.map.hash.TObjectDoubleHashMap;
@@ -24,6 +22,7 @@ import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.gui.table.datasource.TableDataSource;
 import ivorius.reccomplex.json.JsonUtils;
 import ivorius.reccomplex.nbt.NBTStorable;
+import ivorius.reccomplex.nbt.PackedBlockPositions;
 import ivorius.reccomplex.world.gen.feature.structure.Structures;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructureLiveContext;
 import ivorius.reccomplex.world.gen.feature.structure.context.StructureLoadContext;
@@ -59,23 +58,10 @@ import java.util.stream.Collectors;
  */
 public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
 {
-    private static final List<BlockPos> neighbors;
     public static final TObjectDoubleMap<Material> stability = new TObjectDoubleHashMap<>(gnu.trove.impl.Constants.DEFAULT_CAPACITY, gnu.trove.impl.Constants.DEFAULT_LOAD_FACTOR, 1);
 
     static
     {
-        ImmutableList.Builder<BlockPos> builder = ImmutableList.builder();
-
-        for (int x = -1; x <= 1; x++)
-            for (int y = -1; y <= 1; y++)
-                for (int z = -1; z <= 1; z++)
-                {
-                    if (x != 0 || y != 0 || z != 0)
-                        builder.add(new BlockPos(x, y, z));
-                }
-
-        neighbors = builder.build();
-
         stability.put(Material.GLASS, 0.1);
         stability.put(Material.LAVA, 2);
         stability.put(Material.CIRCUITS, 0.2);
@@ -148,7 +134,7 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
     @Override
     public boolean skipGeneration(InstanceData instanceData, StructureLiveContext context, BlockPos pos, IBlockState state, IvWorldData worldData, BlockPos sourcePos)
     {
-        if (instanceData.fallingBlocks.contains(sourcePos))
+        if (instanceData.isFalling(sourcePos))
             return true;
 
         double decay = getDecay(instanceData, sourcePos, state);
@@ -161,6 +147,12 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
         return getStability(worldData, sourcePos) < decay;
     }
 
+    @Override
+    public boolean skipsBySource(InstanceData instanceData)
+    {
+        return true;
+    }
+
     public double getDecay(InstanceData instanceData, BlockPos sourcePos, IBlockState state)
     {
         return Math.pow(instanceData.getDecay(sourcePos), stability.get(state.getMaterial()));
@@ -198,7 +190,7 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
             }
 
             BlockPos.MutableBlockPos dest = new BlockPos.MutableBlockPos(lowerCoord);
-            for (BlockPos sourcePos : instanceData.fallingBlocks)
+            for (BlockPos sourcePos : instanceData.landingOrder())
             {
                 IBlockState source = blockCollection.getBlockState(sourcePos);
 
@@ -413,64 +405,118 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
 
             BlockPos.MutableBlockPos dest = new BlockPos.MutableBlockPos(lowerCoord);
 
+            int volume = product(areaSize);
+            BitSet falling = new BitSet(volume);
+            // Blocks that stay unless their whole group falls
+            BitSet solid = new BitSet(volume);
+            BitSet floor = new BitSet();
+
             for (BlockPos sourcePos : BlockAreas.mutablePositions(blockCollection.area()))
             {
                 IBlockState state = blockCollection.getBlockState(sourcePos);
                 IvMutableBlockPos.add(context.transform.applyOn(sourcePos, dest, areaSize), lowerCoord);
 
-                if (transformer.transformer.skipGeneration(transformer.instanceData, context, dest, state, worldData, sourcePos))
-                    continue;
-
                 if (!canFall(context, worldData, transformer, dest, sourcePos, state))
                     continue;
 
+                int index = InstanceData.index(areaSize, sourcePos.getX(), sourcePos.getY(), sourcePos.getZ());
+
                 double stability = getStability(worldData, sourcePos);
                 double decay = getDecay(instanceData, sourcePos, state);
                 double stabilitySQ = stability * stability;
                 if (!(stability < decay) && stabilitySQ * stabilitySQ < decay) // Almost decay
-                    instanceData.fallingBlocks.add(sourcePos.toImmutable());
+                    falling.set(index);
+                else
+                {
+                    solid.set(index);
+
+                    if (state.getBlock() == RCBlocks.genericSolid
+                            && state.getValue(BlockGenericSolid.TYPE) == 0)
+                        floor.set(index); // TODO Make configurable?
+                }
             }
 
-            Set<BlockPos> complete = new HashSet<>(product(areaSize));
+            // Small groups of touching blocks without a floor fall
+            int[] groups = groupTouching(solid, areaSize);
 
-            HashSet<BlockPos> connected = new HashSet<>();
-            boolean[] hasFloor = new boolean[1];
+            BitSet groundedGroups = new BitSet();
+            for (int index = floor.nextSetBit(0); index >= 0; index = floor.nextSetBit(index + 1))
+                groundedGroups.set(findGroup(groups, index));
 
-            for (BlockPos startPos : BlockAreas.positions(blockCollection.area()))
+            for (int index = solid.nextSetBit(0); index >= 0; index = solid.nextSetBit(index + 1))
             {
-                if (complete.contains(startPos))
-                    continue;
+                int group = findGroup(groups, index);
+                if (-groups[group] < 200 && !groundedGroups.get(group))
+                    falling.set(index);
+            }
 
-                hasFloor[0] = false;
-                connected.clear();
+            instanceData.setFallingBlocks(areaSize, falling);
+        }
+    }
 
-                // Try to fall
-                TransformerAbstractCloud.visitRecursively(Sets.newHashSet(startPos), (changed, sourcePos) ->
-                {
-                    if (!complete.add(sourcePos) || instanceData.fallingBlocks.contains(sourcePos))
-                        return true;
+    /**
+     * Unites all set cells with the set cells among their 26 neighbors.
+     *
+     * @return Per set cell, its parent in the group, or the negative group size for the group's root.
+     */
+    protected static int[] groupTouching(BitSet cells, int[] areaSize)
+    {
+        int width = areaSize[0], length = areaSize[2];
+        int[] groups = new int[product(areaSize)];
 
-                    IvMutableBlockPos.add(context.transform.applyOn(sourcePos, dest, areaSize), lowerCoord);
+        for (int index = cells.nextSetBit(0); index >= 0; index = cells.nextSetBit(index + 1))
+        {
+            groups[index] = -1;
 
-                    IBlockState state = blockCollection.getBlockState(sourcePos);
+            int x = index % width, z = (index / width) % length, y = index / width / length;
 
-                    if (canFall(context, worldData, transformer, dest, sourcePos, state))
+            // Neighbors with lower indices were visited already
+            for (int dy = -1; dy <= 0; dy++)
+                for (int dz = -1; dz <= (dy < 0 ? 1 : 0); dz++)
+                    for (int dx = -1; dx <= (dy < 0 || dz < 0 ? 1 : -1); dx++)
                     {
-                        if (state.getBlock() == RCBlocks.genericSolid
-                                && state.getValue(BlockGenericSolid.TYPE) == 0)
-                            hasFloor[0] = true; // TODO Make configurable?
+                        int nx = x + dx, ny = y + dy, nz = z + dz;
+                        if (nx < 0 || ny < 0 || nz < 0 || nx >= width || nz >= length)
+                            continue;
 
-                        connected.add(sourcePos);
-                        neighbors.stream().map(sourcePos::add).forEach(changed::add);
+                        int neighbor = InstanceData.index(areaSize, nx, ny, nz);
+                        if (cells.get(neighbor))
+                            uniteGroups(groups, index, neighbor);
                     }
+        }
 
-                    return true;
-                });
+        return groups;
+    }
 
-                if (connected.size() > 0 && connected.size() < 200 && !hasFloor[0]) // Now we fall
-                    instanceData.fallingBlocks.addAll(connected);
-            }
+    protected static int findGroup(int[] groups, int index)
+    {
+        while (groups[index] >= 0)
+        {
+            // Path halving
+            if (groups[groups[index]] >= 0)
+                groups[index] = groups[groups[index]];
+            index = groups[index];
+        }
+        return index;
+    }
+
+    protected static void uniteGroups(int[] groups, int a, int b)
+    {
+        a = findGroup(groups, a);
+        b = findGroup(groups, b);
+        if (a == b)
+            return;
+
+        // Attach the smaller group
+        if (groups[a] > groups[b])
+        {
+            int swap = a;
+            a = b;
+            b = swap;
         }
+
+        groups[a] += groups[b];
+        groups[b] = a;
     }
 
     public boolean canLand(IBlockState state)
@@ -497,9 +543,14 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
         public Double baseDecay;
         public BlurredValueField surfaceField;
         public BlurredValueField volumeField;
-        public final Set<BlockPos> fallingBlocks = new HashSet<>();
 
-        public Double[] decayCache;
+        // Sorted source indices, see index()
+        public int[] fallingBlocks = new int[0];
+        public int[] fallingBlocksSize = new int[3];
+        protected BitSet fallingBlockSet = new BitSet();
+
+        // NaN where not computed yet
+        public double[] decayCache;
         public int[] decayCacheSize;
 
         public InstanceData()
@@ -515,7 +566,22 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
             volumeField = compound.hasKey("volumeField", Constants.NBT.TAG_COMPOUND)
                     ? NBTCompoundObjects.read(compound.getCompoundTag("volumeField"), BlurredValueField::new)
                     : null;
-            fallingBlocks.addAll(NBTTagLists.intArraysFrom(compound, "fallingBlocks").stream().map(BlockPositions::fromIntArray).collect(Collectors.toList()));
+            if (compound.hasKey("fallingBlockIndices", Constants.NBT.TAG_INT_ARRAY))
+            {
+                int[] size = compound.getIntArray("fallingBlockArea");
+                if (size.length == 3)
+                {
+                    BitSet falling = new BitSet();
+                    int volume = product(size);
+                    for (int index : compound.getIntArray("fallingBlockIndices"))
+                        if (index >= 0 && index < volume) falling.set(index);
+                    setFallingBlocks(size, falling);
+                }
+            }
+            else if (compound.hasKey("fallingBlockPositions", Constants.NBT.TAG_INT_ARRAY)) // Legacy
+                setFallingBlocks(PackedBlockPositions.unpack(compound.getIntArray("fallingBlockPositions")));
+            else // Legacy
+                setFallingBlocks(NBTTagLists.intArraysFrom(compound, "fallingBlocks").stream().map(BlockPositions::fromIntArray).collect(Collectors.toList()));
             clearDecayCache();
         }
 
@@ -529,18 +595,75 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
                 compound.setTag("field", NBTCompoundObjects.write(surfaceField));
             if (volumeField != null)
                 compound.setTag("volumeField", NBTCompoundObjects.write(volumeField));
-            NBTTagLists.writeIntArraysTo(compound, "fallingBlocks", fallingBlocks.stream().map(BlockPositions::toIntArray).collect(Collectors.toList()));
+            compound.setIntArray("fallingBlockArea", fallingBlocksSize);
+            compound.setIntArray("fallingBlockIndices", fallingBlocks);
             return compound;
         }
 
-        private Integer getIndex(BlockPos pos)
+        /**
+         * Indices grow along x, then z, then y; so ascending indices go bottom up.
+         */
+        public static int index(int[] size, int x, int y, int z)
+        {
+            return (y * size[2] + z) * size[0] + x;
+        }
+
+        public void setFallingBlocks(int[] size, BitSet falling)
+        {
+            fallingBlocksSize = size.clone();
+            fallingBlockSet = falling;
+            fallingBlocks = falling.stream().toArray();
+        }
+
+        protected void setFallingBlocks(Collection<BlockPos> positions)
+        {
+            int[] size = new int[3];
+            for (BlockPos pos : positions)
+            {
+                size[0] = Math.max(size[0], pos.getX() + 1);
+                size[1] = Math.max(size[1], pos.getY() + 1);
+                size[2] = Math.max(size[2], pos.getZ() + 1);
+            }
+
+            BitSet falling = new BitSet();
+            for (BlockPos pos : positions)
+                if (pos.getX() >= 0 && pos.getY() >= 0 && pos.getZ() >= 0)
+                    falling.set(index(size, pos.getX(), pos.getY(), pos.getZ()));
+            setFallingBlocks(size, falling);
+        }
+
+        /**
+         * Landing reads the world, so blocks land in the order they always have: that of a HashSet of their positions.
+         */
+        public Set<BlockPos> landingOrder()
+        {
+            Set<BlockPos> positions = new HashSet<>();
+            for (int index : fallingBlocks)
+                positions.add(fallingBlockPos(index));
+            return positions;
+        }
+
+        public boolean isFalling(BlockPos sourcePos)
+        {
+            int x = sourcePos.getX(), y = sourcePos.getY(), z = sourcePos.getZ();
+            return x >= 0 && y >= 0 && z >= 0 && x < fallingBlocksSize[0] && y < fallingBlocksSize[1] && z < fallingBlocksSize[2]
+                    && fallingBlockSet.get(index(fallingBlocksSize, x, y, z));
+        }
+
+        public BlockPos fallingBlockPos(int index)
+        {
+            int width = fallingBlocksSize[0], length = fallingBlocksSize[2];
+            return new BlockPos(index % width, index / width / length, (index / width) % length);
+        }
+
+        private int getIndex(BlockPos pos)
         {
             if (decayCacheSize == null)
-                return null;
+                return -1;
 
             if (pos.getX() < 0 || pos.getY() < 0 || pos.getZ() < 0
                     || pos.getX() >= decayCacheSize[0] || pos.getY() >= decayCacheSize[1] || pos.getZ() >= decayCacheSize[2])
-                return null;
+                return -1;
 
             return ((pos.getX() * decayCacheSize[1])
                     + pos.getY()) * decayCacheSize[2]
@@ -552,11 +675,11 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
             if (!hasDecay())
                 return 0;
 
-            Integer index = getIndex(pos);
-            if (index != null)
+            int index = getIndex(pos);
+            if (index >= 0)
             {
-                Double decay = decayCache[index];
-                return decay != null ? decay : (decayCache[index] = calculateDecay(pos));
+                double decay = decayCache[index];
+                return !Double.isNaN(decay) ? decay : (decayCache[index] = calculateDecay(pos));
             }
             else
                 return calculateDecay(pos);
@@ -567,16 +690,14 @@ public class TransformerRuins extends Transformer<TransformerRuins.InstanceData>
             if (volumeField != null)
             {
                 decayCacheSize = volumeField.getSize();
-                decayCache = new Double[product(decayCacheSize)];
+                decayCache = new double[product(decayCacheSize)];
+                Arrays.fill(decayCache, Double.NaN);
             }
             else
             {
                 decayCacheSize = null;
                 decayCache = null;
             }
-
-//            for (BlockPos pos : new BlockArea(BlockPos.ORIGIN, new BlockPos(decayCacheSize[0] - 1, decayCacheSize[1] - 1, decayCacheSize[2] - 1)))
-//                decayCache[getIndex(pos)] = calculateDecay(pos);
         }
 
         protected boolean hasDecay()
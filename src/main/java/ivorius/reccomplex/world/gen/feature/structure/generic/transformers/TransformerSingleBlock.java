@@ -37,6 +37,12 @@ public abstract class TransformerSingleBlock<S extends NBTStorable> extends Tran
         return matches(context.environment, instanceData, sourcePos, state);
     }
 
+    @Override
+    public boolean skipsBySource(S instanceData)
+    {
+        return true;
+    }
+
     @Override
     public void transform(S instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, RunTransformer transformer)
     {
@@ -70,7 +70,10 @@ public class TransformerWorldScript extends TransformerSingleBlock<TransformerWo
                 .maturity(StructureSpawnContext.GenerateMaturity.FIRST);
 
         WorldScriptMulti.InstanceData scriptInstanceData = script.prepareInstanceData(generator.prepare().get(), coord);
-        script.generate(generator.spawn().get(), transformer, scriptInstanceData, coord);
+        try (StructureSpawnContext scriptContext = generator.spawn().get())
+        {
+            script.generate(scriptContext, transformer, scriptInstanceData, coord);
+        }
     }
 
     @Override
@@ -188,7 +188,7 @@ public class GenericVillagePiece extends StructureVillagePieces.Village
         if (result instanceof StructureGenerator.GenerationResult.Success.New) {
             WorldStructureGenerationData.StructureEntry sight = ((StructureGenerator.GenerationResult.Success.New) result).sight;
             
-            sight.setPreventComplementation(true);
+            WorldStructureGenerationData.get(world).changeEntry(sight, e -> e.setPreventComplementation(true));
         }
 
         startedGeneration = true;
@@ -32,6 +32,7 @@ import ivorius.reccomplex.world.gen.feature.structure.generic.Selection;
 import ivorius.reccomplex.world.gen.feature.structure.generic.generation.MazeGeneration;
 import ivorius.reccomplex.world.gen.feature.structure.generic.maze.*;
 import ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules.BlockedConnectorStrategy;
+import ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules.CancellationStrategy;
 import ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules.LimitAABBStrategy;
 import ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules.MazeRule;
 import ivorius.reccomplex.world.gen.feature.structure.generic.maze.rules.MazeRuleRegistry;
@@ -46,7 +47,8 @@ import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -230,11 +232,12 @@ public class WorldScriptMazeGenerator implements WorldScript<WorldScriptMazeGene
         if (mazeComponent.rooms.isEmpty())
             return null;
 
-        ConnectorFactory factory = new ConnectorFactory();
+        MazeComponentLibrary library = StructureRegistry.INSTANCE.module(MazeGeneration.Cache.class).library(mazeID, transform, environment);
+
+        ConnectorFactory factory = library.factory();
 
-        Connector wallConnector = factory.get(ConnectorStrategy.DEFAULT_WALL);
         Connector defaultConnector = mazeComponent.defaultConnector.toConnector(factory);
-        Set<Connector> blockedConnections = Collections.singleton(wallConnector); // TODO Make configurable
+        Set<Connector> blockedConnections = library.blockedConnections;
 
         int[] boundsHigher = mazeComponent.rooms.boundsHigher();
         int[] boundsLower = mazeComponent.rooms.boundsLower();
@@ -245,11 +248,7 @@ public class WorldScriptMazeGenerator implements WorldScript<WorldScriptMazeGene
         final int[] outsideBoundsHigher = IvVecMathHelper.add(boundsHigher, oneArray);
         final int[] outsideBoundsLower = IvVecMathHelper.sub(boundsLower, oneArray);
 
-        List<MazeComponentStructure<Connector>> transformedComponents = MazeGeneration.structures(StructureRegistry.INSTANCE, mazeID)
-                .flatMap(pair -> pair.getLeft().declaredVariables().omega(environment, true)
-                        .flatMap(domain -> WorldGenMaze.transforms(pair.getLeft(), pair.getRight(), transform, factory, environment.copy(domain), blockedConnections))
-                )
-                .collect(Collectors.toList());
+        List<MazeComponentStructure<Connector>> transformedComponents = new ArrayList<>(library.components);
 
         MorphingMazeComponent<Connector> maze = new SetMazeComponent<>();
 
@@ -271,22 +270,17 @@ public class WorldScriptMazeGenerator implements WorldScript<WorldScriptMazeGene
 
         int totalRooms = mazeComponent.rooms.compile(true).size();
 
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<List<PlacedMazeComponent<MazeComponentStructure<Connector>, Connector>>> future = executor.submit(() -> MazeComponentConnector.connect(maze,
-                transformedComponents, connectorStrategy,
-                new MazePredicateMany<>(predicates),
-                random,
-                RCConfig.mazePlacementReversesPerRoom >= 0 ? MathHelper.floor(totalRooms * RCConfig.mazePlacementReversesPerRoom + 0.5f) : MazeComponentConnector.INFINITE_REVERSES
-        ));
-        executor.shutdown();
-
         try
         {
-            return future.get(RCConfig.mazeTimeout, TimeUnit.MILLISECONDS);
+            return MazeSolverPool.solve(cancellation -> MazeComponentConnector.connect(maze,
+                    transformedComponents, connectorStrategy,
+                    new CancellationStrategy<>(new MazePredicateMany<>(predicates), cancellation),
+                    random,
+                    RCConfig.mazePlacementReversesPerRoom >= 0 ? MathHelper.floor(totalRooms * RCConfig.mazePlacementReversesPerRoom + 0.5f) : MazeComponentConnector.INFINITE_REVERSES
+            ), RCConfig.mazeTimeout);
         }
         catch (TimeoutException e)
         {
-            future.cancel(true);
             throw new GenerationException("Maze generation timed out: " + mazeID);
         }
         catch (ExecutionException | InterruptedException e)
@@ -0,0 +1,40 @@
+package ivorius.reccomplex.nbt;
+
+import net.minecraft.util.math.BlockPos;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PackedBlockPositionsTest
+{
+    @Test
+    public void roundTripsInOrder()
+    {
+        List<BlockPos> positions = Arrays.asList(new BlockPos(3, 4, 5), new BlockPos(-2, 0, 7), new BlockPos(10, -3, -1));
+
+        int[] packed = PackedBlockPositions.pack(positions);
+
+        assertNotNull(packed);
+        assertEquals(PackedBlockPositions.HEADER_LENGTH + positions.size(), packed.length);
+        assertEquals(positions, PackedBlockPositions.unpack(packed));
+    }
+
+    @Test
+    public void packsEmptySets()
+    {
+        int[] packed = PackedBlockPositions.pack(Collections.emptyList());
+
+        assertNotNull(packed);
+        assertTrue(PackedBlockPositions.unpack(packed).isEmpty());
+    }
+
+    @Test
+    public void refusesHugeSpans()
+    {
+        assertNull(PackedBlockPositions.pack(Arrays.asList(new BlockPos(-30000000, 0, -30000000), new BlockPos(30000000, 255, 30000000))));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://ivorius.net
+ */
+
+package ivorius.reccomplex.utils.algebra;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+public class BoolExpressionCompilerTest
+{
+    private static final String[] EXPRESSIONS = {
+            "a", "!a", "!!a", "a & b", "a | b", "a & b & c", "a | b | c", "a & b | c", "a | b & !c",
+            "(a | b) & (!a | c)", "!(a & (b | !c))", "a ?? b :: c", "a ?? (b ?? c :: !c) :: !b",
+            "a & true", "a & false", "a | true", "a | false", "true ?? a :: b", "false ?? a :: b",
+            "a ?? true :: false", "a ?? false :: true", "a ?? true :: true", "!(false | a) & (b | true)"
+    };
+
+    private static final String[] EQUALITY_EXPRESSIONS = {
+            "a == b", "a != b", "!a != b", "a != true", "a == false", "a & b != c", "(a != b) == c", "a != b ?? c :: !c"
+    };
+
+    private static final Algebra<Boolean> EQUALITY_ALGEBRA = new Algebra<>(
+            BoolAlgebra.parentheses("(", ")"),
+            BoolAlgebra.conditional("??", "::"),
+            BoolAlgebra.equals("=="), BoolAlgebra.unEquals("!="),
+            BoolAlgebra.or("|"), BoolAlgebra.and("&"),
+            BoolAlgebra.not("!")
+    );
+
+    private static Algebra.Expression<Boolean, String> parse(String expression) throws ParseException
+    {
+        return RCBoolAlgebra.algebra().parse(expression, var -> var);
+    }
+
+    private static Predicate<boolean[]> compile(Algebra.Expression<Boolean, String> expression)
+    {
+        return BoolExpressionCompiler.compile(expression, var ->
+                var.equals("true") || var.equals("false")
+                        ? BoolExpressionCompiler.constant(Boolean.parseBoolean(var))
+                        : values -> values[var.charAt(0) - 'a']);
+    }
+
+    private static boolean interpret(Algebra.Expression<Boolean, String> expression, boolean[] values)
+    {
+        return expression.evaluate(var -> var.equals("true") || var.equals("false")
+                ? Boolean.parseBoolean(var)
+                : values[var.charAt(0) - 'a']);
+    }
+
+    @Test
+    public void matchesInterpretation() throws ParseException
+    {
+        for (String string : EXPRESSIONS)
+            assertMatchesInterpretation(string, parse(string));
+    }
+
+    @Test
+    public void matchesInterpretationOfEquality() throws ParseException
+    {
+        for (String string : EQUALITY_EXPRESSIONS)
+            assertMatchesInterpretation(string, EQUALITY_ALGEBRA.parse(string, var -> var));
+    }
+
+    private static void assertMatchesInterpretation(String string, Algebra.Expression<Boolean, String> expression)
+    {
+        Predicate<boolean[]> compiled = compile(expression);
+
+        for (int i = 0; i < 8; i++)
+        {
+            boolean[] values = {(i & 1) != 0, (i & 2) != 0, (i & 4) != 0};
+            Assert.assertEquals(string, interpret(expression, values), compiled.test(values));
+        }
+    }
+
+    @Test
+    public void foldsConstants() throws ParseException
+    {
+        Assert.assertTrue(BoolExpressionCompiler.isConstant(compile(parse("a & false")), false));
+        Assert.assertTrue(BoolExpressionCompiler.isConstant(compile(parse("a | !false")), true));
+        Assert.assertTrue(BoolExpressionCompiler.isConstant(compile(parse("false ?? a :: true")), true));
+        Assert.assertTrue(BoolExpressionCompiler.isConstant(compile(parse("a ?? true :: true")), true));
+        Assert.assertFalse(BoolExpressionCompiler.isConstant(compile(parse("a & true")), true));
+    }
+
+    @Test
+    public void shortCircuits() throws ParseException
+    {
+        int[] evaluations = new int[1];
+        Predicate<boolean[]> compiled = BoolExpressionCompiler.compile(parse("a & b & c"), var -> values ->
+        {
+            evaluations[0]++;
+            return values[var.charAt(0) - 'a'];
+        });
+
+        Assert.assertFalse(compiled.test(new boolean[]{false, true, true}));
+        Assert.assertEquals(1, evaluations[0]);
+    }
+
+    @Test
+    public void comparesEquality()
+    {
+        Predicate<Boolean> identity = b -> b;
+
+        Predicate<Boolean> equal = ((BoolExpressionCompiler.Compilable) BoolAlgebra.equals("=")).compile(Arrays.asList(identity, BoolExpressionCompiler.constant(true)));
+        Predicate<Boolean> unEqual = ((BoolExpressionCompiler.Compilable) BoolAlgebra.unEquals("!=")).compile(Arrays.asList(identity, BoolExpressionCompiler.constant(true)));
+
+        Assert.assertTrue(equal.test(true));
+        Assert.assertFalse(equal.test(false));
+        Assert.assertFalse(unEqual.test(true));
+        Assert.assertTrue(unEqual.test(false));
+    }
+
+    @Test
+    public void unEqualsIsInequality() throws ParseException
+    {
+        Algebra.Expression<Boolean, String> expression = EQUALITY_ALGEBRA.parse("a != b", var -> var);
+
+        for (int i = 0; i < 4; i++)
+        {
+            boolean[] values = {(i & 1) != 0, (i & 2) != 0, false};
+            Assert.assertEquals(values[0] != values[1], interpret(expression, values));
+        }
+    }
+}
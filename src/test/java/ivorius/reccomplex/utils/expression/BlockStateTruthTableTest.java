@@ -0,0 +1,119 @@
+package ivorius.reccomplex.utils.expression;
+
+import ivorius.ivtoolkit.tools.MCRegistryDefault;
+import ivorius.reccomplex.utils.algebra.ExpressionCache;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockStateTruthTableTest
+{
+    @BeforeClass
+    public static void bootstrapMinecraft()
+    {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void remembersResults()
+    {
+        BlockStateTruthTable table = new BlockStateTruthTable();
+
+        assertEquals(BlockStateTruthTable.UNKNOWN, table.get(5));
+
+        table.set(5, true);
+        table.set(64, false);
+        assertEquals(1, table.get(5));
+        assertEquals(0, table.get(64));
+        assertEquals(BlockStateTruthTable.UNKNOWN, table.get(6));
+        assertEquals(BlockStateTruthTable.UNKNOWN, table.get(BlockStateTruthTable.UNKNOWN));
+    }
+
+    @Test
+    public void forgetsResultsOnInvalidate()
+    {
+        BlockStateTruthTable table = new BlockStateTruthTable();
+        table.set(5, true);
+
+        BlockStateTruthTable.invalidateAll();
+
+        assertEquals(BlockStateTruthTable.UNKNOWN, table.get(5));
+        table.set(5, false);
+        assertEquals(0, table.get(5));
+    }
+
+    @Test
+    public void idsOnlyRegisteredStates()
+    {
+        int id = BlockStateTruthTable.id(Blocks.STONE.getDefaultState());
+        assertNotEquals(BlockStateTruthTable.UNKNOWN, id);
+    }
+
+    @Test
+    public void allocatesOnFirstResult()
+    {
+        BlockStateTruthTable table = new BlockStateTruthTable();
+        assertFalse(table.isAllocated());
+
+        assertEquals(BlockStateTruthTable.UNKNOWN, table.get(5));
+        assertFalse(table.isAllocated());
+
+        table.set(5, true);
+        assertTrue(table.isAllocated());
+
+        // Grows to fit higher ids, and keeps what it knew
+        table.set((1 << 16) - 1, false);
+        assertEquals(1, table.get(5));
+        assertEquals(0, table.get((1 << 16) - 1));
+    }
+
+    @Test
+    public void allocatesOnlyWhenEvaluated()
+    {
+        BlockExpression expression = block("minecraft:stone");
+        assertFalse(expression.truthTable.isAllocated());
+
+        assertTrue(expression.evaluate(Blocks.STONE.getDefaultState()));
+        assertTrue(expression.truthTable.isAllocated());
+    }
+
+    @Test
+    public void nestedExpressionsDontMemoize()
+    {
+        BlockExpression nested = ExpressionCache.of(new PositionedBlockExpression.BlockVariableType(PositionedBlockExpression.BLOCK_PREFIX, "", new MCRegistryDefault()).createCache(), "minecraft:stone");
+        assertNull(nested.truthTable);
+    }
+
+    @Test
+    public void classifiesPositionedExpressions()
+    {
+        assertNotNull(positioned("is:liquid").truthTable);
+        assertNotNull(positioned("minecraft:stone | is:water").truthTable);
+
+        // Air and the like depend on the world
+        assertNull(positioned("is:air").truthTable);
+        assertNull(positioned("is:liquid & global:foo").truthTable);
+        assertNull(positioned("block.global:foo").truthTable);
+    }
+
+    @Test
+    public void classifiesBlockExpressions()
+    {
+        assertNotNull(block("minecraft:stone").truthTable);
+        assertNull(block("global:foo").truthTable);
+        assertNull(block("minecraft:stone | global:foo").truthTable);
+    }
+
+    private static PositionedBlockExpression positioned(String expression)
+    {
+        return ExpressionCache.of(new PositionedBlockExpression(new MCRegistryDefault()), expression);
+    }
+
+    private static BlockExpression block(String expression)
+    {
+        return ExpressionCache.of(new BlockExpression(new MCRegistryDefault()), expression);
+    }
+}
@@ -0,0 +1,65 @@
+package ivorius.reccomplex.world.gen.feature;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkBitmapTest
+{
+    @Test
+    public void addsEachChunkOnce()
+    {
+        ChunkBitmap bitmap = new ChunkBitmap();
+
+        assertTrue(bitmap.add(3, -7));
+        assertFalse(bitmap.add(3, -7));
+        assertTrue(bitmap.contains(3, -7));
+        assertFalse(bitmap.contains(-7, 3));
+        assertEquals(1, bitmap.size());
+    }
+
+    @Test
+    public void separatesRegions()
+    {
+        ChunkBitmap bitmap = new ChunkBitmap();
+        bitmap.add(31, 0);
+        bitmap.add(32, 0);
+        bitmap.add(-1, -1);
+
+        assertEquals(3, bitmap.regionKeys().size());
+        assertFalse(bitmap.contains(0, 0));
+        assertFalse(bitmap.contains(63, 0));
+    }
+
+    @Test
+    public void roundTripsPackedArrays()
+    {
+        ChunkBitmap bitmap = new ChunkBitmap();
+        for (int x = -40; x < 40; x += 3)
+            for (int z = -40; z < 40; z += 7)
+                bitmap.add(x, z);
+
+        ChunkBitmap read = new ChunkBitmap();
+        read.read(bitmap.write());
+
+        assertEquals(bitmap.size(), read.size());
+        for (int x = -40; x < 40; x++)
+            for (int z = -40; z < 40; z++)
+                assertEquals(bitmap.contains(x, z), read.contains(x, z));
+    }
+
+    @Test
+    public void writesSingleRegions()
+    {
+        ChunkBitmap bitmap = new ChunkBitmap();
+        bitmap.add(5, 5);
+        bitmap.add(40, 5);
+
+        ChunkBitmap read = new ChunkBitmap();
+        read.read(bitmap.write(0, 0));
+
+        assertTrue(read.contains(5, 5));
+        assertFalse(read.contains(40, 5));
+        assertEquals(0, bitmap.write(2, 2).length);
+    }
+}
@@ -0,0 +1,107 @@
+package ivorius.reccomplex.world.gen.feature;
+
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class WorldStructureEntryIndexTest
+{
+    private static WorldStructureGenerationData.CustomEntry entry(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        return new WorldStructureGenerationData.CustomEntry(UUID.randomUUID(), new StructureBoundingBox(minX, minY, minZ, maxX, maxY, maxZ), "test");
+    }
+
+    @Test
+    public void findsIntersectingEntriesOnce()
+    {
+        WorldStructureEntryIndex index = new WorldStructureEntryIndex();
+        WorldStructureGenerationData.CustomEntry large = entry(0, 0, 0, 100, 50, 100);
+        index.add(large);
+
+        List<WorldStructureGenerationData.Entry> found = new ArrayList<>();
+        index.forEachIntersecting(new StructureBoundingBox(10, 10, 10, 90, 20, 90), found::add);
+
+        assertEquals(1, found.size());
+        assertSame(large, found.get(0));
+    }
+
+    @Test
+    public void respectsVerticalBounds()
+    {
+        WorldStructureEntryIndex index = new WorldStructureEntryIndex();
+        index.add(entry(0, 60, 0, 20, 80, 20));
+
+        assertFalse(index.anyIntersecting(new StructureBoundingBox(0, 0, 0, 20, 59, 20), e -> true));
+        assertTrue(index.anyIntersecting(new StructureBoundingBox(0, 0, 0, 20, 60, 20), e -> true));
+        assertTrue(index.anyAt(10, 70, 10, e -> true));
+        assertFalse(index.anyAt(10, 81, 10, e -> true));
+    }
+
+    @Test
+    public void removalClearsAllChunks()
+    {
+        WorldStructureEntryIndex index = new WorldStructureEntryIndex();
+        WorldStructureGenerationData.CustomEntry entry = entry(-40, 0, -40, 40, 10, 40);
+        index.add(entry);
+
+        assertTrue(index.hasEntriesIn(-3, -3));
+        assertTrue(index.remove(entry.getUuid()));
+        assertFalse(index.remove(entry.getUuid()));
+
+        assertEquals(0, index.size());
+        assertFalse(index.hasEntriesIn(-3, -3));
+        assertFalse(index.anyIntersecting(new StructureBoundingBox(-40, 0, -40, 40, 10, 40), e -> true));
+    }
+
+    @Test
+    public void reusesIdsAfterRemoval()
+    {
+        WorldStructureEntryIndex index = new WorldStructureEntryIndex();
+        WorldStructureGenerationData.CustomEntry first = entry(0, 0, 0, 5, 5, 5);
+        WorldStructureGenerationData.CustomEntry second = entry(100, 0, 100, 105, 5, 105);
+
+        index.add(first);
+        index.remove(first.getUuid());
+        index.add(second);
+
+        assertFalse(index.anyIntersecting(new StructureBoundingBox(0, 0, 0, 5, 5, 5), e -> true));
+        assertTrue(index.anyIntersecting(new StructureBoundingBox(100, 0, 100, 105, 5, 105), e -> e == second));
+    }
+
+    @Test
+    public void chunkBucketsAreDecorationShifted()
+    {
+        WorldStructureEntryIndex index = new WorldStructureEntryIndex();
+        index.add(entry(8, 0, 8, 23, 10, 23));
+
+        assertTrue(index.hasEntriesIn(0, 0));
+        assertFalse(index.hasEntriesIn(1, 1));
+        assertFalse(index.hasEntriesIn(-1, -1));
+    }
+
+    @Test
+    public void callbacksMayQueryTheIndex()
+    {
+        WorldStructureEntryIndex index = new WorldStructureEntryIndex();
+        for (int i = 0; i < 10; i++)
+            index.add(entry(i * 20, 0, 0, i * 20 + 30, 10, 30));
+
+        StructureBoundingBox all = new StructureBoundingBox(0, 0, 0, 250, 10, 30);
+        List<WorldStructureGenerationData.Entry> visited = new ArrayList<>();
+        index.forEachIntersecting(all, entry ->
+        {
+            // Nested visits used to take over the outer visit's stamp
+            index.anyIntersecting(entry.getBoundingBox(), e -> false);
+            visited.add(entry);
+        });
+
+        assertEquals(10, visited.size());
+        assertEquals(10, new HashSet<>(visited).size());
+    }
+}
@@ -0,0 +1,118 @@
+package ivorius.reccomplex.world.gen.feature;
+
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.reccomplex.RCConfig;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class WorldStructureGenerationDataTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private boolean shardStructureGenerationData;
+
+    @BeforeClass
+    public static void bootstrapMinecraft()
+    {
+        Bootstrap.register();
+    }
+
+    @Before
+    public void enableSharding()
+    {
+        shardStructureGenerationData = RCConfig.shardStructureGenerationData;
+        RCConfig.shardStructureGenerationData = true;
+    }
+
+    @After
+    public void restoreSharding()
+    {
+        RCConfig.shardStructureGenerationData = shardStructureGenerationData;
+    }
+
+    private static WorldStructureGenerationData.StructureEntry entry(String structureID, int x, int z)
+    {
+        return new WorldStructureGenerationData.StructureEntry(UUID.randomUUID(), new StructureBoundingBox(x, 0, z, x + 10, 10, z + 10),
+                structureID, null, AxisAlignedTransform2D.ORIGINAL, false);
+    }
+
+    private static WorldStructureGenerationData reload(WorldStructureGenerationData data, File directory)
+    {
+        NBTTagCompound compound = data.writeToNBT(new NBTTagCompound());
+
+        WorldStructureGenerationData reloaded = new WorldStructureGenerationData();
+        reloaded.readFromNBT(compound);
+        reloaded.bind(directory);
+        return reloaded;
+    }
+
+    @Test
+    public void countsWithoutLoadingRegions()
+    {
+        File directory = folder.getRoot();
+
+        WorldStructureGenerationData data = new WorldStructureGenerationData();
+        data.bind(directory);
+
+        WorldStructureGenerationData.StructureEntry near = entry("a", 100, 100);
+        data.addEntry(near);
+        data.addEntry(entry("a", 5000, 5000));
+        data.addEntry(entry("a", -5000, 3000));
+        data.addEntry(entry("b", 5000, -5000));
+
+        WorldStructureGenerationData reloaded = reload(data, directory);
+
+        assertEquals(3, reloaded.getStructureCount("a"));
+        assertEquals(1, reloaded.getStructureCount("b"));
+        assertEquals(0, reloaded.getStructureCount("c"));
+        assertTrue(reloaded.loadedRegions.isEmpty());
+
+        // Loaded entries are counted already
+        assertEquals(1, reloaded.structureEntriesIn(new ChunkPos(6, 6)).count());
+        assertEquals(3, reloaded.getStructureCount("a"));
+
+        reloaded.removeEntry(near.getUuid());
+        assertEquals(2, reload(reloaded, directory).getStructureCount("a"));
+    }
+
+    @Test
+    public void storesSpanningEntriesInOwnerRegion()
+    {
+        File directory = folder.getRoot();
+
+        WorldStructureGenerationData data = new WorldStructureGenerationData();
+        data.bind(directory);
+
+        // Decoration chunks 24 to 43, so regions 0 and 1
+        WorldStructureGenerationData.StructureEntry spanning = new WorldStructureGenerationData.StructureEntry(UUID.randomUUID(),
+                new StructureBoundingBox(400, 0, 100, 700, 10, 110), "a", null, AxisAlignedTransform2D.ORIGINAL, false);
+        data.addEntry(spanning);
+        long owner = WorldStructureGenerationData.ownerRegion(spanning.getBoundingBox());
+
+        WorldStructureGenerationData reloaded = reload(data, directory);
+
+        // Reading the other region follows the reference to the owner
+        WorldStructureGenerationData.StructureEntry entry = reloaded.structureEntriesIn(new ChunkPos(40, 6)).findFirst().orElse(null);
+        assertNotNull(entry);
+        assertEquals(spanning.getUuid(), entry.getUuid());
+        assertTrue(reloaded.loadedRegions.contains(owner));
+
+        reloaded.dirtyRegions.clear();
+        reloaded.changeEntry(entry, e -> e.setPreventComplementation(true));
+        assertEquals(1, reloaded.dirtyRegions.size());
+        assertTrue(reloaded.dirtyRegions.contains(owner));
+
+        WorldStructureGenerationData changed = reload(reloaded, directory);
+        assertTrue(changed.structureEntriesIn(new ChunkPos(40, 6)).findFirst().get().preventComplementation());
+    }
+}
@@ -0,0 +1,51 @@
+package ivorius.reccomplex.world.gen.feature.selector;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AliasTableTest
+{
+    @Test
+    public void matchesWeights()
+    {
+        double[] weights = {1, 0, 3, 0.5, 5.5};
+        AliasTable<Integer> table = new AliasTable<>(Arrays.asList(0, 1, 2, 3, 4), weights);
+
+        Random random = new Random(0);
+        int draws = 200000;
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < draws; i++)
+            counts[table.select(random)]++;
+
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; i++)
+            assertEquals(weights[i] / 10, (double) counts[i] / draws, 0.01);
+    }
+
+    @Test
+    public void consumesOneDoublePerSelection()
+    {
+        AliasTable<String> table = new AliasTable<>(Arrays.asList("a", "b", "c"), new double[]{1, 2, 3});
+
+        Random random = new Random(42), reference = new Random(42);
+        for (int i = 0; i < 10; i++)
+        {
+            table.select(random);
+            reference.nextDouble();
+        }
+
+        assertEquals(reference.nextLong(), random.nextLong());
+    }
+
+    @Test
+    public void emptySelectsNothing()
+    {
+        assertNull(new AliasTable<String>(Collections.emptyList(), new double[0]).select(new Random()));
+        assertNull(new AliasTable<>(Collections.singletonList("a"), new double[]{0}).select(new Random()));
+    }
+}
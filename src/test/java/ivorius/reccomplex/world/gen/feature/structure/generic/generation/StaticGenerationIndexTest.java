@@ -0,0 +1,56 @@
+package ivorius.reccomplex.world.gen.feature.structure.generic.generation;
+
+import ivorius.ivtoolkit.blocks.BlockSurfacePos;
+import ivorius.reccomplex.world.RCChunks;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class StaticGenerationIndexTest
+{
+    // No repeat, repeats within a chunk, and repeats longer than a chunk, which may wrap around
+    private static final int[] PERIODS = {0, 1, 7, 16, 17, 20, 33, 64, 100, 250};
+
+    @Test
+    public void latticeMatchesRepeatIntersections()
+    {
+        Random random = new Random(3);
+
+        for (int periodX : PERIODS)
+            for (int periodZ : PERIODS)
+            {
+                List<StaticGenerationIndex.Entry> entries = new ArrayList<>();
+                for (int i = 0; i < 40; i++)
+                    entries.add(new StaticGenerationIndex.Entry(i, null, null,
+                            new BlockSurfacePos(random.nextInt(2000) - 1000, random.nextInt(2000) - 1000), false));
+
+                StaticGenerationIndex.Lattice lattice = new StaticGenerationIndex.Lattice(periodX, periodZ, entries);
+
+                for (int i = 0; i < 200; i++)
+                {
+                    // Around the entries, so fixed positions get hit as well
+                    ChunkPos chunkPos = i % 2 == 0
+                            ? new ChunkPos(random.nextInt(130) - 65, random.nextInt(130) - 65)
+                            : new ChunkPos(entries.get(i % entries.size()).pos.x >> 4, entries.get(i % entries.size()).pos.z >> 4);
+
+                    List<StaticGenerationIndex.Entry> hits = new ArrayList<>();
+                    lattice.collect(chunkPos, hits);
+
+                    Set<Integer> expected = new HashSet<>();
+                    for (StaticGenerationIndex.Entry entry : entries)
+                        if (RCChunks.repeatIntersections(chunkPos, entry.pos, periodX, periodZ).findAny().isPresent())
+                            expected.add(entry.order);
+
+                    Set<Integer> actual = new HashSet<>();
+                    for (StaticGenerationIndex.Entry hit : hits)
+                        actual.add(hit.order);
+
+                    assertEquals("Periods " + periodX + ", " + periodZ + " in " + chunkPos, expected, actual);
+                    assertEquals("Duplicate hits in " + chunkPos, actual.size(), hits.size());
+                }
+            }
+    }
+}
@@ -0,0 +1,118 @@
+package ivorius.reccomplex.world.gen.feature.structure.generic.placement;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConformitySweepTest
+{
+    // The per-shift evaluation that sweeps replace
+    private static float bruteForce(boolean[][] terrain, int[][] heights, int shift, int sources, float needed)
+    {
+        int failChances = (int) (sources * (1f - needed));
+        int matched = 0;
+
+        for (int column = 0; column < heights.length; column++)
+            for (int height : heights[column])
+            {
+                if (terrain[column][height + shift])
+                    matched++;
+                else if (--failChances < 0)
+                    return 0;
+            }
+
+        return (float) matched / sources;
+    }
+
+    @Test
+    public void matchesPerShiftEvaluation()
+    {
+        Random random = new Random(1);
+        int worldHeight = 96, columns = 24;
+
+        // Synthetic terrain: solid up to a noisy surface, with some caves
+        boolean[][] terrain = new boolean[columns][worldHeight];
+        int[][] heights = new int[columns][];
+        int sources = 0;
+        for (int column = 0; column < columns; column++)
+        {
+            int surface = 40 + random.nextInt(12);
+            for (int y = 0; y < worldHeight; y++)
+                terrain[column][y] = y < surface && random.nextInt(10) > 0;
+
+            // Sources in runs with gaps, like the floor and walls of a structure
+            heights[column] = random.nextBoolean() ? new int[]{0, 1, 2, 5, 6, 9} : new int[]{0};
+            sources += heights[column].length;
+        }
+
+        int minY = 0, maxY = worldHeight - 10;
+        ConformitySweep sweep = new ConformitySweep(minY, maxY);
+        for (int column = 0; column < columns; column++)
+        {
+            boolean[] columnTerrain = terrain[column];
+            sweep.addColumn(y -> columnTerrain[y], heights[column]);
+        }
+
+        for (float needed : new float[]{0, .5f, .9f, 1})
+            for (int shift = minY; shift <= maxY; shift++)
+                assertEquals(bruteForce(terrain, heights, shift, sources, needed), sweep.conformity(shift, sources, needed), 0.0001);
+    }
+
+    @Test
+    public void probesEachHeightOnce()
+    {
+        int[] probes = new int[64];
+        ConformitySweep sweep = new ConformitySweep(10, 40);
+        sweep.addColumn(y -> ++probes[y] > 0, new int[]{3, 0, 1, 2, 8});
+
+        for (int y = 0; y < probes.length; y++)
+            assertEquals(y >= 10 && y <= 48 ? 1 : 0, probes[y]);
+        assertEquals(5, sweep.matched(25));
+    }
+
+    @Test
+    public void sweepMatchesPerShiftMode()
+    {
+        Random random = new Random(2);
+
+        for (int trial = 0; trial < 50; trial++)
+        {
+            int worldHeight = 64 + random.nextInt(64);
+            int columns = 1 + random.nextInt(40);
+
+            // Synthetic terrain with a noisy surface, columns keyed like block columns
+            Long2ObjectOpenHashMap<boolean[]> terrain = new Long2ObjectOpenHashMap<>();
+            Long2ObjectOpenHashMap<int[]> heights = new Long2ObjectOpenHashMap<>();
+            int sources = 0;
+            for (int column = 0; column < columns; column++)
+            {
+                long key = ((long) random.nextInt(32) << 32) | (column & 0xffffffffL);
+                boolean[] columnTerrain = new boolean[worldHeight];
+                int surface = worldHeight / 3 + random.nextInt(worldHeight / 3);
+                for (int y = 0; y < worldHeight; y++)
+                    columnTerrain[y] = y < surface ? random.nextInt(8) > 0 : random.nextInt(20) == 0;
+                terrain.put(key, columnTerrain);
+
+                int[] columnHeights = random.ints(1 + random.nextInt(6), 0, 12).distinct().toArray();
+                heights.put(key, columnHeights);
+                sources += columnHeights.length;
+            }
+
+            // Some sources couldn't be probed
+            sources += random.nextInt(3);
+
+            ConformitySweep.ColumnMatcher matcher = (column, y) -> terrain.get(column)[y];
+
+            int minY = random.nextInt(10), maxY = minY + random.nextInt(worldHeight - 12 - minY);
+            ConformitySweep sweep = new ConformitySweep(minY, maxY);
+            heights.long2ObjectEntrySet().forEach(column -> sweep.addColumn(y -> matcher.matches(column.getLongKey(), y), column.getValue()));
+
+            for (float needed : new float[]{0, .3f, .5f, .8f, 1})
+                for (int shift = minY; shift <= maxY; shift++)
+                    assertEquals(ConformitySweep.conformity(heights, matcher, shift, sources, needed), sweep.conformity(shift, sources, needed), 0.0001);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ivorius.reccomplex.world.gen.feature.structure.generic.transformers;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransformerRuinsTest
+{
+    @Test
+    public void groupsMatchFloodFill()
+    {
+        Random random = new Random(5);
+
+        for (int trial = 0; trial < 300; trial++)
+        {
+            int[] size = {1 + random.nextInt(12), 1 + random.nextInt(12), 1 + random.nextInt(12)};
+            double density = random.nextDouble();
+
+            boolean[][][] grid = new boolean[size[0]][size[1]][size[2]];
+            BitSet cells = new BitSet();
+            for (int x = 0; x < size[0]; x++)
+                for (int y = 0; y < size[1]; y++)
+                    for (int z = 0; z < size[2]; z++)
+                        if (random.nextDouble() < density)
+                        {
+                            grid[x][y][z] = true;
+                            cells.set(TransformerRuins.InstanceData.index(size, x, y, z));
+                        }
+
+            int[] groups = TransformerRuins.groupTouching(cells, size);
+
+            boolean[][][] seen = new boolean[size[0]][size[1]][size[2]];
+            for (int x = 0; x < size[0]; x++)
+                for (int y = 0; y < size[1]; y++)
+                    for (int z = 0; z < size[2]; z++)
+                    {
+                        if (!grid[x][y][z] || seen[x][y][z])
+                            continue;
+
+                        List<int[]> component = floodFill(grid, seen, x, y, z);
+                        int root = TransformerRuins.findGroup(groups, TransformerRuins.InstanceData.index(size, x, y, z));
+
+                        assertEquals(component.size(), -groups[root]);
+                        for (int[] cell : component)
+                            assertEquals(root, TransformerRuins.findGroup(groups, TransformerRuins.InstanceData.index(size, cell[0], cell[1], cell[2])));
+                    }
+        }
+    }
+
+    // The 26-neighbor flood fill the groups replace
+    private static List<int[]> floodFill(boolean[][][] grid, boolean[][][] seen, int x, int y, int z)
+    {
+        List<int[]> component = new ArrayList<>();
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{x, y, z});
+        seen[x][y][z] = true;
+
+        while (!queue.isEmpty())
+        {
+            int[] cell = queue.poll();
+            component.add(cell);
+
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++)
+                    for (int dz = -1; dz <= 1; dz++)
+                    {
+                        int nx = cell[0] + dx, ny = cell[1] + dy, nz = cell[2] + dz;
+                        if (nx < 0 || ny < 0 || nz < 0 || nx >= grid.length || ny >= grid[0].length || nz >= grid[0][0].length
+                                || !grid[nx][ny][nz] || seen[nx][ny][nz])
+                            continue;
+
+                        seen[nx][ny][nz] = true;
+                        queue.add(new int[]{nx, ny, nz});
+                    }
+        }
+
+        return component;
+    }
+}